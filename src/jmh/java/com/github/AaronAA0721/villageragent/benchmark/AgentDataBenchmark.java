@@ -0,0 +1,67 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.github.AaronAA0721.villageragent.ai.ActionRequest;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import net.minecraft.nbt.CompoundNBT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-agent work that scales with the size of its state: NBT save/load and
+ * building the planning and chat prompts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentDataBenchmark {
+
+    private VillagerAgentData agent;
+    private CompoundNBT saved;
+    private int tokenBudget;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.init();
+        agent = BenchmarkSupport.populatedAgent(2L);
+        saved = agent.serializeNBT();
+        tokenBudget = ModConfig.LLM_PROMPT_TOKEN_BUDGET.get();
+    }
+
+    @Benchmark
+    public CompoundNBT serializeNBT() {
+        return agent.serializeNBT();
+    }
+
+    @Benchmark
+    public VillagerAgentData deserializeNBT() {
+        VillagerAgentData loaded = new VillagerAgentData(agent.getVillagerId(), false);
+        loaded.deserializeNBT(saved);
+        return loaded;
+    }
+
+    /** Snapshot plus prompt, as the planner does for every plan request. */
+    @Benchmark
+    public String actionPrompt() {
+        ActionRequest request = agent.buildActionRequest();
+        return request.buildPrompt(tokenBudget);
+    }
+
+    @Benchmark
+    public String chatContext() {
+        return agent.buildChatContext("Do you have any carrots for sale?", tokenBudget);
+    }
+}
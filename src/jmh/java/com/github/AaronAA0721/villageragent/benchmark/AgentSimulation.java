@@ -0,0 +1,196 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.github.AaronAA0721.villageragent.ai.AgentPlanner;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentManager;
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.LatencyHistogram;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Headless scaling harness: runs a village of agents through simulated game
+ * days as fast as the machine allows and reports what each tick cost.
+ *
+ * Each tick it runs the entity-free part of the mod's agent tick:
+ * <ul>
+ *   <li>drains agent mailboxes through {@link VillagerAgentManager#drainMailboxes},</li>
+ *   <li>runs {@link VillagerAgentManager#think} on the configured interval, so
+ *       goals and {@link AgentPlanner} plans from the stub provider go through
+ *       the server's own code,</li>
+ *   <li>sends player chat at the requested rate.</li>
+ * </ul>
+ *
+ * Farming is not covered. tickFarming and everything under it (scans, the
+ * farm dispatcher, routes and path searches, crop forecasts, batched block
+ * changes) work on a ServerWorld and live villagers, which cannot exist
+ * without a running server; measure them there, or per scan with
+ * {@link FarmingScanBenchmark}. Farming sessions that plans start are ended
+ * after --session-ticks, so farmers become idle and ask for plans again as
+ * they would on a server, but no farming work is run or timed.
+ *
+ * Reports per-tick percentiles, allocation and heap after GC for every
+ * simulated day, then exits non-zero if a gate given on the command line is
+ * exceeded:
+ * <pre>
+ *   ./gradlew simulate -PsimArgs="--agents=2000 --days=7 --max-p99-micros=2000 --max-heap-growth-mb=64"
+ * </pre>
+ */
+public class AgentSimulation {
+    private static final int TICKS_PER_DAY = 24_000;
+    private static final String[] OPENERS = {
+            "hi", "hello there!", "what do you sell?", "how is the harvest?", "got any bread?",
+            "Where can I find iron around here?", "Tell me about the village.", "good morning"
+    };
+
+    private final Map<String, String> options;
+    private final Random random = new Random(7L);
+    private final List<VillagerAgentData> agents = new ArrayList<>();
+    /** Tick each farmer's current farming session started, for ending it. */
+    private final Map<VillagerAgentData, Long> sessionStarts = new HashMap<>();
+    private int farmerCount;
+
+    private AgentSimulation(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        System.exit(new AgentSimulation(options).run());
+    }
+
+    private int run() {
+        BenchmarkSupport.init();
+        Configurator.setRootLevel(Level.WARN);
+        // Replies arrive as fast as the executor can produce them
+        ModConfig.STUB_LATENCY_MS.set(0);
+        ModConfig.STUB_LATENCY_SPREAD_MS.set(0);
+        // Planning is opt-in on servers; the stub answers for free
+        ModConfig.AGENT_LLM_PLANNING.set(true);
+
+        int agentCount = intOption("agents", 1000);
+        int days = intOption("days", 7);
+        double farmerShare = doubleOption("farmer-share", 0.25);
+        int sessionTicks = intOption("session-ticks", 1200);
+        double chatsPerTick = doubleOption("chats-per-tick", 0.05);
+        populate(agentCount, farmerShare);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long startHeap = heapAfterGc(memory);
+        long startAllocated = allocatedBytes(threads);
+        LatencyHistogram total = new LatencyHistogram();
+
+        System.out.printf("Simulating %d agents (%d farmers) for %d days%n", agentCount, farmerCount, days);
+        System.out.println("day    p50µs    p99µs  p99.9µs    maxµs   alloc MB/day   heap MB");
+
+        long tick = 0;
+        long lastHeap = startHeap;
+        for (int day = 1; day <= days; day++) {
+            LatencyHistogram daily = new LatencyHistogram();
+            long dayAllocated = allocatedBytes(threads);
+            for (int t = 0; t < TICKS_PER_DAY; t++, tick++) {
+                long start = System.nanoTime();
+                tick(tick, sessionTicks, chatsPerTick);
+                long elapsed = System.nanoTime() - start;
+                daily.recordNanos(elapsed);
+                total.recordNanos(elapsed);
+            }
+            lastHeap = heapAfterGc(memory);
+            System.out.printf("%3d %8d %8d %8d %8d %14.1f %9.1f%n", day,
+                    daily.getPercentileMicros(50), daily.getPercentileMicros(99), daily.getPercentileMicros(99.9),
+                    daily.getMaxMicros(), (allocatedBytes(threads) - dayAllocated) / 1e6, lastHeap / 1e6);
+        }
+
+        long heapGrowth = lastHeap - startHeap;
+        System.out.printf("total: p50 %dµs, p99 %dµs, p99.9 %dµs, max %dµs; allocated %.1f MB; heap growth %.1f MB%n",
+                total.getPercentileMicros(50), total.getPercentileMicros(99), total.getPercentileMicros(99.9),
+                total.getMaxMicros(), (allocatedBytes(threads) - startAllocated) / 1e6, heapGrowth / 1e6);
+
+        int exitCode = 0;
+        if (options.containsKey("max-p99-micros") && total.getPercentileMicros(99) > intOption("max-p99-micros", 0)) {
+            System.out.println("FAIL: p99 tick cost above " + options.get("max-p99-micros") + "µs");
+            exitCode = 1;
+        }
+        if (options.containsKey("max-heap-growth-mb") && heapGrowth / 1e6 > doubleOption("max-heap-growth-mb", 0)) {
+            System.out.println("FAIL: heap grew more than " + options.get("max-heap-growth-mb") + " MB");
+            exitCode = 1;
+        }
+        return exitCode;
+    }
+
+    private void populate(int agentCount, double farmerShare) {
+        for (int i = 0; i < agentCount; i++) {
+            VillagerAgentData agent = BenchmarkSupport.populatedAgent(i + 1);
+            boolean farmer = random.nextDouble() < farmerShare;
+            agent.updateProfession(farmer ? "Farmer" : (random.nextBoolean() ? "Librarian" : "Toolsmith"));
+            // Spread think steps out the way villagers join the world at different times
+            agent.setLastThinkTime(-random.nextInt(ModConfig.AGENT_THINK_INTERVAL.get()));
+            VillagerAgentManager.addAgent(agent.getVillagerId(), agent);
+            agents.add(agent);
+            if (farmer) farmerCount++;
+        }
+    }
+
+    private void tick(long tick, int sessionTicks, double chatsPerTick) {
+        VillagerAgentManager.drainMailboxes();
+
+        int thinkInterval = ModConfig.AGENT_THINK_INTERVAL.get();
+        for (VillagerAgentData agent : agents) {
+            endFarmingSession(agent, tick, sessionTicks);
+            if (tick - agent.getLastThinkTime() < thinkInterval) continue;
+            agent.setLastThinkTime(tick);
+            VillagerAgentManager.think(agent, tick);
+        }
+
+        if (random.nextDouble() < chatsPerTick) {
+            VillagerAgentData agent = agents.get(random.nextInt(agents.size()));
+            agent.generateChatResponse("Steve", OPENERS[random.nextInt(OPENERS.length)], tick);
+        }
+    }
+
+    /** No farming runs here, so a session a plan started ends once it has lasted {@code sessionTicks}. */
+    private void endFarmingSession(VillagerAgentData agent, long tick, int sessionTicks) {
+        if (!agent.isInFarmingState()) return;
+        long started = sessionStarts.computeIfAbsent(agent, k -> tick);
+        if (tick - started < sessionTicks) return;
+        sessionStarts.remove(agent);
+        agent.setInFarmingState(false);
+        agent.setCurrentActivity("idle");
+    }
+
+    private static long heapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /** Bytes allocated so far by every live thread, including the LLM executor. */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private int intOption(String name, int fallback) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : fallback;
+    }
+
+    private double doubleOption(String name, double fallback) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : fallback;
+    }
+}
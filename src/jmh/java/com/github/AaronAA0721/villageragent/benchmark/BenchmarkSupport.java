@@ -0,0 +1,57 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.registry.Bootstrap;
+
+import java.util.UUID;
+
+/**
+ * Shared setup for benchmarks that run outside a game: bootstraps the
+ * vanilla registries (blocks, items, NBT) and loads the mod config with its
+ * defaults in memory, so code that reads {@link ModConfig} works unchanged.
+ */
+final class BenchmarkSupport {
+    private static boolean initialized;
+
+    private BenchmarkSupport() {}
+
+    static synchronized void init() {
+        if (initialized) return;
+        Bootstrap.bootStrap();
+
+        CommentedConfig config = CommentedConfig.inMemory();
+        ModConfig.SPEC.correct(config);
+        ModConfig.SPEC.setConfig(config);
+        // Benchmarks must never reach a real provider
+        ModConfig.LLM_API_TYPE.set("stub");
+        initialized = true;
+    }
+
+    /**
+     * An agent with a realistic amount of state: a part-filled inventory,
+     * memories and a day's worth of conversation.
+     */
+    static VillagerAgentData populatedAgent(long seed) {
+        VillagerAgentData agent = new VillagerAgentData(new UUID(seed, seed * 31), false);
+        agent.updateProfession("Farmer");
+        agent.getInventory().addItem(new ItemStack(Items.WHEAT_SEEDS, 32));
+        agent.getInventory().addItem(new ItemStack(Items.WHEAT, 20));
+        agent.getInventory().addItem(new ItemStack(Items.CARROT, 12));
+        agent.getInventory().addItem(new ItemStack(Items.BREAD, 3));
+        agent.getInventory().addItem(new ItemStack(Items.EMERALD, 7));
+        agent.getInventory().addItem(new ItemStack(Items.IRON_HOE));
+
+        for (int i = 0; i < 40; i++) {
+            agent.addMemory("Harvested wheat near the well on day " + i + " and traded bread with Steve");
+        }
+        for (int i = 0; i < 30; i++) {
+            agent.addConversation("Steve: Do you have any carrots for sale today? (" + i + ")", 1_000L + i * 100);
+            agent.addConversation(agent.getName() + ": I can spare a few carrots for an emerald.", 1_000L + i * 100);
+        }
+        return agent;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.github.AaronAA0721.villageragent.ai.FarmingAction;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The farmer's block scans over a synthetic farm: the 360° sorted scans used
+ * while farming and the forward-cone glance used while idle.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FarmingScanBenchmark {
+
+    /** Share of farmland with a crop on it. */
+    @Param({"0.2", "0.9"})
+    public double cropFraction;
+
+    private SyntheticFarm farm;
+    private BlockPos villagerPos;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.init();
+        farm = new SyntheticFarm(12, cropFraction, 42L);
+        villagerPos = new BlockPos(0, SyntheticFarm.GROUND_Y + 1, 0);
+    }
+
+    @Benchmark
+    public List<BlockPos> matureCropsSorted() {
+        return FarmingAction.findMatureCropsSorted(farm, villagerPos);
+    }
+
+    @Benchmark
+    public List<BlockPos> emptyFarmlandSorted() {
+        return FarmingAction.findEmptyFarmlandSorted(farm, villagerPos);
+    }
+
+    @Benchmark
+    public BlockPos nearestMatureCropInCone() {
+        return FarmingAction.findNearestMatureCrop(farm, villagerPos, 0.0f);
+    }
+}
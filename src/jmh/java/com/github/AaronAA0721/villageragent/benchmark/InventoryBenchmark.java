@@ -0,0 +1,65 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.github.AaronAA0721.villageragent.ai.AgentInventory;
+import com.github.AaronAA0721.villageragent.ai.CraftingRecipe;
+import com.github.AaronAA0721.villageragent.ai.RecipeRegistry;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AgentInventory} add/count/remove and {@link CraftingRecipe#canCraft}
+ * over every registered recipe, on a part-filled farmer inventory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InventoryBenchmark {
+
+    private AgentInventory inventory;
+    private ItemStack wheat;
+    private List<CraftingRecipe> recipes;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.init();
+        inventory = BenchmarkSupport.populatedAgent(1L).getInventory();
+        wheat = new ItemStack(Items.WHEAT);
+        recipes = RecipeRegistry.getAllRecipes();
+    }
+
+    @Benchmark
+    public int countItem() {
+        return inventory.countItem(wheat);
+    }
+
+    /** Add then remove, leaving the inventory as it was. */
+    @Benchmark
+    public boolean addThenRemove() {
+        inventory.addItem(new ItemStack(Items.WHEAT, 3));
+        return inventory.removeItem(wheat, 3);
+    }
+
+    @Benchmark
+    public void canCraftAllRecipes(Blackhole blackhole) {
+        for (CraftingRecipe recipe : recipes) {
+            blackhole.consume(recipe.canCraft(inventory));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
+import com.github.AaronAA0721.villageragent.network.SyncVillagerDataPacket;
+import com.github.AaronAA0721.villageragent.network.TradeRequestPacket;
+import com.github.AaronAA0721.villageragent.network.VillagerResponsePacket;
+import io.netty.buffer.Unpooled;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.network.PacketBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode plus decode of the packets sent on every chat turn, trade and GUI
+ * open, through a reused buffer as the network channel would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketCodecBenchmark {
+
+    private final PacketBuffer buffer = new PacketBuffer(Unpooled.buffer(8192));
+    private TradeRequestPacket trade;
+    private SyncVillagerDataPacket sync;
+    private VillagerResponsePacket response;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.init();
+        VillagerAgentData agent = BenchmarkSupport.populatedAgent(3L);
+        UUID id = agent.getVillagerId();
+
+        trade = new TradeRequestPacket(id, new ItemStack(Items.EMERALD, 4), ItemStack.EMPTY,
+                new ItemStack(Items.BREAD, 6), new ItemStack(Items.CARROT, 10));
+
+        List<ItemStack> items = new ArrayList<>();
+        for (ItemStack stack : agent.getInventory().getItems()) {
+            if (!stack.isEmpty()) items.add(stack.copy());
+        }
+        sync = new SyncVillagerDataPacket(id, agent.getName(), agent.getProfession(), agent.getPersonality(), items);
+
+        response = new VillagerResponsePacket(id, agent.getName(),
+                "Ah, carrots! I harvested a fine batch this morning. I can let you have ten for two emeralds, "
+                        + "or trade them for some bread if you have any to spare.");
+    }
+
+    @Benchmark
+    public TradeRequestPacket tradeRequest() {
+        buffer.clear();
+        TradeRequestPacket.encode(trade, buffer);
+        return TradeRequestPacket.decode(buffer);
+    }
+
+    @Benchmark
+    public SyncVillagerDataPacket syncVillagerData() {
+        buffer.clear();
+        SyncVillagerDataPacket.encode(sync, buffer);
+        return SyncVillagerDataPacket.decode(buffer);
+    }
+
+    @Benchmark
+    public VillagerResponsePacket villagerResponse() {
+        buffer.clear();
+        VillagerResponsePacket.encode(response, buffer);
+        return VillagerResponsePacket.decode(buffer);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.AaronAA0721.villageragent.benchmark;
+
+import net.minecraft.block.BeetrootBlock;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.CropsBlock;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+
+import java.util.Random;
+
+/**
+ * An in-memory block source shaped like a village farm, for benchmarking
+ * scans without a running world. Farmland fills a square at {@link #GROUND_Y}
+ * around the origin, with grass outside it; the layer above holds crops of
+ * random age, or air, at the given densities. Everything else is air.
+ */
+final class SyntheticFarm implements IBlockReader {
+    static final int GROUND_Y = 63;
+
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+    private static final BlockState FARMLAND = Blocks.FARMLAND.defaultBlockState();
+    private static final BlockState GRASS = Blocks.GRASS_BLOCK.defaultBlockState();
+
+    private final int radius;
+    private final BlockState[] cropLayer;
+
+    /**
+     * @param radius       half the width of the farmland square
+     * @param cropFraction share of farmland with a crop on it
+     * @param seed         layout seed, so runs are comparable
+     */
+    SyntheticFarm(int radius, double cropFraction, long seed) {
+        this.radius = radius;
+        int width = radius * 2 + 1;
+        this.cropLayer = new BlockState[width * width];
+
+        Random random = new Random(seed);
+        for (int i = 0; i < cropLayer.length; i++) {
+            if (random.nextDouble() >= cropFraction) {
+                cropLayer[i] = AIR;
+            } else if (random.nextInt(4) == 0) {
+                cropLayer[i] = Blocks.BEETROOTS.defaultBlockState().setValue(BeetrootBlock.AGE, random.nextInt(4));
+            } else {
+                BlockState crop = random.nextBoolean() ? Blocks.WHEAT.defaultBlockState() : Blocks.CARROTS.defaultBlockState();
+                cropLayer[i] = crop.setValue(CropsBlock.AGE, random.nextInt(8));
+            }
+        }
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        boolean inFarm = Math.abs(pos.getX()) <= radius && Math.abs(pos.getZ()) <= radius;
+        if (pos.getY() == GROUND_Y) {
+            return inFarm ? FARMLAND : GRASS;
+        }
+        if (pos.getY() == GROUND_Y + 1 && inFarm) {
+            int width = radius * 2 + 1;
+            return cropLayer[(pos.getX() + radius) * width + (pos.getZ() + radius)];
+        }
+        return AIR;
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return Fluids.EMPTY.defaultFluidState();
+    }
+
+    @Override
+    public TileEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+}
@@ -1,8 +1,14 @@
 package com.github.AaronAA0721.villageragent;
 
+import com.github.AaronAA0721.villageragent.ai.CropForecast;
+import com.github.AaronAA0721.villageragent.ai.FarmDispatcher;
+import com.github.AaronAA0721.villageragent.ai.PathService;
+import com.github.AaronAA0721.villageragent.ai.VillageNavGraph;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentManager;
 import com.github.AaronAA0721.villageragent.commands.VillagerAgentCommand;
 import com.github.AaronAA0721.villageragent.config.ModConfig;
 import com.github.AaronAA0721.villageragent.events.VillagerEventHandler;
+import com.github.AaronAA0721.villageragent.metrics.PrometheusFileExporter;
 import com.github.AaronAA0721.villageragent.network.ModNetworking;
 import net.minecraft.block.Block;
 import net.minecraftforge.common.MinecraftForge;
@@ -17,7 +23,9 @@ import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.InterModEnqueueEvent;
 import net.minecraftforge.fml.event.lifecycle.InterModProcessEvent;
+import net.minecraftforge.fml.event.server.FMLServerStartedEvent;
 import net.minecraftforge.fml.event.server.FMLServerStartingEvent;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -65,6 +73,8 @@ public class Villageragent {
         LOGGER.info("World Interaction Enabled: " + ModConfig.ENABLE_WORLD_INTERACTION.get());
         LOGGER.info("===========================================");
 
+        VillagerAgentManager.registerMetrics();
+
         // Register network packets
         event.enqueueWork(() -> {
             ModNetworking.register();
@@ -97,6 +107,20 @@ public class Villageragent {
         LOGGER.info("HELLO from server starting");
     }
 
+    @SubscribeEvent
+    public void onServerStarted(FMLServerStartedEvent event) {
+        PrometheusFileExporter.start(event.getServer());
+    }
+
+    @SubscribeEvent
+    public void onServerStopping(FMLServerStoppingEvent event) {
+        PrometheusFileExporter.stop();
+        PathService.shutdown();
+        VillageNavGraph.clear();
+        FarmDispatcher.clear();
+        CropForecast.clear();
+    }
+
     // Register commands
     @SubscribeEvent
     public void onRegisterCommands(RegisterCommandsEvent event) {
@@ -1,5 +1,7 @@
 package com.github.AaronAA0721.villageragent.ai;
 
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+
 import java.util.List;
 import java.util.UUID;
 
@@ -55,58 +57,48 @@ public class ActionRequest {
     public void setAvailableActions(List<String> actions) { this.availableActions = actions; }
     
     /**
-     * Build a prompt for the LLM based on this request
+     * Build a prompt for the LLM based on this request, trimmed to the
+     * configured context token budget.
      */
     public String buildPrompt() {
-        StringBuilder prompt = new StringBuilder();
-        
-        prompt.append("You are ").append(villagerName).append(", a ").append(profession).append(" villager.\n");
-        prompt.append("Personality: ").append(personality).append("\n\n");
-        
-        prompt.append("Current Inventory:\n");
-        if (inventoryItems != null && !inventoryItems.isEmpty()) {
-            for (String item : inventoryItems) {
-                prompt.append("- ").append(item).append("\n");
-            }
-        } else {
-            prompt.append("- Empty\n");
-        }
-        
-        prompt.append("\nWhat you see around you:\n");
-        if (recentObservations != null && !recentObservations.isEmpty()) {
-            for (String obs : recentObservations) {
-                prompt.append("- ").append(obs).append("\n");
-            }
-        } else {
-            prompt.append("- Nothing special\n");
-        }
-        
-        prompt.append("\nYour goals:\n");
-        if (goals != null && !goals.isEmpty()) {
-            for (String goal : goals) {
-                prompt.append("- ").append(goal).append("\n");
-            }
-        } else {
-            prompt.append("- No specific goals\n");
-        }
-        
-        prompt.append("\nRecipes you know:\n");
-        if (availableRecipes != null && !availableRecipes.isEmpty()) {
-            for (String recipe : availableRecipes) {
-                prompt.append("- ").append(recipe).append("\n");
-            }
-        } else {
-            prompt.append("- No recipes available\n");
-        }
-        
-        prompt.append("\nWhat should you do next? Choose from:\n");
+        return buildPrompt(ModConfig.LLM_PROMPT_TOKEN_BUDGET.get());
+    }
+
+    /**
+     * Build a single-string prompt for the LLM based on this request.
+     */
+    public String buildPrompt(int tokenBudget) {
+        return toLLMPrompt(tokenBudget).getCombinedSystemPrompt();
+    }
+
+    /**
+     * Split this request into a cacheable prefix (who the villager is and the
+     * action menu) and the budgeted volatile state. Inventory, surroundings,
+     * goals, recipes and memories compete for the budget in that order of
+     * relevance.
+     */
+    public LLMPrompt toLLMPrompt(int tokenBudget) {
+        StringBuilder prefix = new StringBuilder();
+        prefix.append("You are ").append(villagerName).append(", a ").append(profession).append(" villager.\n");
+        prefix.append("Personality: ").append(personality).append("\n\n");
+        prefix.append("When asked what to do next, choose from:\n");
         if (availableActions != null && !availableActions.isEmpty()) {
             for (String action : availableActions) {
-                prompt.append("- ").append(action).append("\n");
+                prefix.append("- ").append(action).append("\n");
             }
         }
-        
-        return prompt.toString();
+        prefix.append("\nRespond ONLY with JSON for the one action you will do next: ")
+              .append("{\"type\":\"HARVEST\",\"target\":\"wheat\",\"quantity\":8,\"reason\":\"short reason\"}. ")
+              .append("\"target\" names the item or recipe; IDLE may give \"duration\" in ticks.");
+
+        String context = new PromptBuilder("action")
+                .section("Current Inventory:", inventoryItems, 0.9, "Empty")
+                .section("What you see around you:", recentObservations, 0.7, "Nothing special")
+                .section("Your goals:", goals, 1.0, "No specific goals")
+                .section("Recipes you know:", availableRecipes, 0.6, "No recipes available")
+                .section("Things you remember:", memories, 0.4)
+                .build(tokenBudget);
+
+        return new LLMPrompt(prefix.toString(), context, "What should you do next?").withJsonOutput();
     }
 }
-
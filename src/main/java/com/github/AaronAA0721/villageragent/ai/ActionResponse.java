@@ -1,11 +1,22 @@
 package com.github.AaronAA0721.villageragent.ai;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Response from LLM containing the next action for a villager
  */
 public class ActionResponse {
+    /** Actions taken from one reply: plans are applied in one go, so only the next one counts. */
+    private static final int MAX_PLAN_ACTIONS = 1;
+    private static final long DEFAULT_IDLE_TICKS = 200;
+
     private UUID villagerId;
     private VillagerAction action;
     private String reasoning;  // Why the LLM chose this action
@@ -20,10 +31,125 @@ public class ActionResponse {
     public UUID getVillagerId() { return villagerId; }
     public VillagerAction getAction() { return action; }
     public String getReasoning() { return reasoning; }
+
+    /**
+     * Parse a planning reply into the villager's next action (a list of at
+     * most one). Expects {@code {"type":"HARVEST","target":"wheat","quantity":8,"reason":"..."}};
+     * a list of actions keeps only the first, and a plain-text reply falls
+     * back to the first action name it mentions.
+     */
+    public static List<ActionResponse> parseAll(UUID villagerId, String reply) {
+        List<ActionResponse> plan = new ArrayList<>();
+        int start = reply.indexOf('{');
+        if (start >= 0) {
+            try (JsonReader json = new JsonReader(new StringReader(reply.substring(start)))) {
+                json.setLenient(true);
+                readPlan(json, villagerId, plan);
+            } catch (IOException | IllegalStateException e) {
+                // keep the actions read before the error
+            }
+        }
+        if (plan.isEmpty()) {
+            VillagerAction.ActionType type = firstMentionedType(reply);
+            if (type != VillagerAction.ActionType.UNKNOWN) {
+                plan.add(new ActionResponse(villagerId, createAction(type, null, 0, 0, reply.trim()), reply.trim()));
+            }
+        }
+        return plan;
+    }
+
+    private static void readPlan(JsonReader json, UUID villagerId, List<ActionResponse> plan) throws IOException {
+        JsonToken token = json.peek();
+        if (token == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                readPlan(json, villagerId, plan);
+            }
+            json.endArray();
+            return;
+        }
+        if (token != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return;
+        }
+
+        String type = null;
+        String target = null;
+        String reason = "";
+        int quantity = 0;
+        long duration = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            JsonToken value = json.peek();
+            if (value == JsonToken.BEGIN_ARRAY) {
+                readPlan(json, villagerId, plan);  // {"actions": [...]}
+            } else if (("type".equals(key) || "action".equals(key)) && value == JsonToken.STRING) {
+                type = json.nextString().trim().toUpperCase();
+            } else if ("target".equals(key) && value == JsonToken.STRING) {
+                target = json.nextString().trim();
+            } else if ("reason".equals(key) && value == JsonToken.STRING) {
+                reason = json.nextString().trim();
+            } else if ("quantity".equals(key) && value == JsonToken.NUMBER) {
+                quantity = json.nextInt();
+            } else if ("duration".equals(key) && value == JsonToken.NUMBER) {
+                duration = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (type != null && plan.size() < MAX_PLAN_ACTIONS) {
+            VillagerAction.ActionType actionType;
+            try {
+                actionType = VillagerAction.ActionType.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                actionType = VillagerAction.ActionType.UNKNOWN;
+            }
+            String description = reason.isEmpty() ? type.toLowerCase() + (target != null ? " " + target : "") : reason;
+            plan.add(new ActionResponse(villagerId, createAction(actionType, target, quantity, duration, description), reason));
+        }
+    }
+
+    private static VillagerAction createAction(VillagerAction.ActionType type, String target, int quantity,
+                                               long duration, String description) {
+        VillagerAction action = new VillagerAction(type, description);
+        switch (type) {
+            case CRAFT:
+                action.setTargetRecipe(target);
+                break;
+            case HARVEST:
+            case GATHER:
+                action.setTargetItem(target);
+                action.setTargetQuantity(quantity);
+                break;
+            case IDLE:
+                action.setIdleDuration(duration > 0 ? duration : DEFAULT_IDLE_TICKS);
+                break;
+            default:
+                break;
+        }
+        return action;
+    }
+
+    private static VillagerAction.ActionType firstMentionedType(String reply) {
+        String upper = reply.toUpperCase();
+        VillagerAction.ActionType first = VillagerAction.ActionType.UNKNOWN;
+        int firstIndex = Integer.MAX_VALUE;
+        for (VillagerAction.ActionType type : VillagerAction.ActionType.values()) {
+            if (type == VillagerAction.ActionType.UNKNOWN) continue;
+            int index = upper.indexOf(type.name());
+            if (index >= 0 && index < firstIndex) {
+                first = type;
+                firstIndex = index;
+            }
+        }
+        return first;
+    }
     
     @Override
     public String toString() {
         return String.format("Action for %s: %s (Reason: %s)", villagerId, action, reasoning);
     }
 }
-
@@ -0,0 +1,144 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asks the LLM what each villager should do next without ever blocking a tick.
+ *
+ * On the server thread an agent's state is snapshotted into an
+ * {@link ActionRequest} and handed to {@link LLMService}. The reply is parsed
+ * into actions on the LLM executor and posted to the agent's mailbox, which
+ * the server thread drains at the start of the next tick, applying the plan
+ * through {@link ActionExecutor}. Each agent has a cap on plans in flight, so a slow
+ * provider just means fewer plans, never a stalled server.
+ */
+public class AgentPlanner {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final Map<UUID, AtomicInteger> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final Map<UUID, Long> LAST_PLAN_TICK = new ConcurrentHashMap<>();
+
+    /** Whether planning is switched on and a provider can answer. */
+    public static boolean isEnabled() {
+        return ModConfig.AGENT_LLM_PLANNING.get() && LLMService.isConfigured();
+    }
+
+    /**
+     * Whether a plan could change what this agent does. Only farming has a
+     * working executor; craft, move and gather plans would only relabel the
+     * villager's activity, so other professions are not asked.
+     */
+    public static boolean canPlanFor(VillagerAgentData agent) {
+        return "farmer".equalsIgnoreCase(agent.getProfession());
+    }
+
+    /**
+     * Request a new plan for an agent if it is due and under its in-flight
+     * limit. Server thread only; returns immediately.
+     *
+     * @return true if a request was sent
+     */
+    public static boolean requestPlan(VillagerAgentData agent, long gameTime) {
+        UUID id = agent.getVillagerId();
+        Long last = LAST_PLAN_TICK.get(id);
+        if (last != null && gameTime - last < ModConfig.AGENT_PLAN_INTERVAL.get()) return false;
+
+        AtomicInteger inFlight = IN_FLIGHT.computeIfAbsent(id, k -> new AtomicInteger());
+        if (inFlight.get() >= ModConfig.AGENT_PLAN_MAX_IN_FLIGHT.get()) {
+            MetricsRegistry.increment("planner_skipped_in_flight_total");
+            return false;
+        }
+        inFlight.incrementAndGet();
+        LAST_PLAN_TICK.put(id, gameTime);
+
+        // Snapshot on the server thread; everything after this works on copies
+        ActionRequest request = agent.buildActionRequest();
+        MetricsRegistry.increment("planner_requests_total");
+
+        LLMService.queryLLMStrict(request.toLLMPrompt(ModConfig.LLM_PROMPT_TOKEN_BUDGET.get()))
+                .thenApply(reply -> ActionResponse.parseAll(id, reply))
+                .whenComplete((plan, error) -> {
+                    if (error != null) {
+                        LOGGER.debug("Plan request for " + request.getVillagerName() + " failed: " + error.getMessage());
+                        MetricsRegistry.increment("planner_failures_total");
+                    }
+                    agent.post(a -> onPlanArrived(a, error == null ? plan : Collections.emptyList()));
+                });
+        return true;
+    }
+
+    /**
+     * Apply a plan that has arrived. Runs on the server thread from the
+     * agent's mailbox.
+     */
+    private static void onPlanArrived(VillagerAgentData agent, List<ActionResponse> plan) {
+        AtomicInteger inFlight = IN_FLIGHT.get(agent.getVillagerId());
+        if (inFlight != null) inFlight.decrementAndGet();
+        if (plan.isEmpty() || VillagerAgentManager.getAgent(agent.getVillagerId()) != agent) return;
+
+        VillagerEntity villager = null;
+        ServerWorld world = null;
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server != null) {
+            for (ServerWorld level : server.getAllLevels()) {
+                Entity entity = level.getEntity(agent.getVillagerId());
+                if (entity instanceof VillagerEntity) {
+                    villager = (VillagerEntity) entity;
+                    world = level;
+                    break;
+                }
+            }
+        }
+        applyPlan(agent, plan, villager, world);
+    }
+
+    private static void applyPlan(VillagerAgentData agent, List<ActionResponse> plan,
+                                  VillagerEntity villager, ServerWorld world) {
+        MetricsRegistry.increment("planner_plans_applied_total");
+        for (ActionResponse response : plan) {
+            VillagerAction action = response.getAction();
+            MetricsRegistry.increment(MetricsRegistry.name("planner_actions_total",
+                    "type", action.getActionType().name().toLowerCase()));
+            if (!response.getReasoning().isEmpty()) {
+                agent.addMemory("Decided to " + action.getActionType().name().toLowerCase() + ": " + response.getReasoning());
+            }
+
+            boolean fieldWork = action.getActionType() == VillagerAction.ActionType.HARVEST
+                    || action.getActionType() == VillagerAction.ActionType.GROW;
+            if (fieldWork && "farmer".equalsIgnoreCase(agent.getProfession())) {
+                // The farming state machine picks reachable blocks itself
+                VillagerAgentManager.startFarmingSession(agent);
+            } else {
+                ActionExecutor.executeAction(agent, action, villager, world);
+            }
+        }
+    }
+
+    /** Plan requests currently waiting on the LLM, across all agents. */
+    public static int getInFlightCount() {
+        int total = 0;
+        for (AtomicInteger inFlight : IN_FLIGHT.values()) total += inFlight.get();
+        return total;
+    }
+
+    /** Forget bookkeeping for a removed agent. */
+    public static void forget(UUID villagerId) {
+        IN_FLIGHT.remove(villagerId);
+        LAST_PLAN_TICK.remove(villagerId);
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-agent tick cost, so an MSPT spike can be traced to the villagers
+ * causing it.
+ *
+ * Time spent in an agent's think step, farming state machine (with its block
+ * scans and pathfinding broken out) and item pickup is accumulated into a
+ * ring of time slots covering the last {@link #WINDOW_TICKS} ticks. When
+ * throttling is enabled, an agent averaging more than the configured budget
+ * per tick only runs one in {@code agent_throttle_stride} of its updates
+ * until its cost falls back under budget.
+ *
+ * Server thread only.
+ */
+public class AgentTickProfiler {
+
+    public enum Cost {
+        THINK,
+        FARMING,
+        SCAN,
+        PATHFIND,
+        PICKUP
+    }
+
+    private static final int SLOT_TICKS = 20;
+    private static final int SLOTS = 10;
+    public static final int WINDOW_TICKS = SLOT_TICKS * SLOTS;
+
+    /** One agent's recent cost. Scan and pathfind time is included in farming. */
+    public static class Profile {
+        private final UUID villagerId;
+        private final long[][] nanos = new long[Cost.values().length][SLOTS];
+        private long currentSlot = -1;
+        private boolean throttled;
+        private int skipCounter;
+
+        Profile(UUID villagerId) {
+            this.villagerId = villagerId;
+        }
+
+        public UUID getVillagerId() { return villagerId; }
+        public boolean isThrottled() { return throttled; }
+
+        /** Total nanoseconds of this kind over the window. */
+        public long getWindowNanos(Cost cost) {
+            long total = 0;
+            for (long slot : nanos[cost.ordinal()]) total += slot;
+            return total;
+        }
+
+        /** Everything the agent cost over the window. */
+        public long getWindowNanos() {
+            return getWindowNanos(Cost.THINK) + getWindowNanos(Cost.FARMING) + getWindowNanos(Cost.PICKUP);
+        }
+
+        /** Average microseconds per tick over the window. */
+        public double getMicrosPerTick() {
+            return getWindowNanos() / 1_000.0 / WINDOW_TICKS;
+        }
+
+        private void advanceTo(long gameTime) {
+            long slot = gameTime / SLOT_TICKS;
+            if (slot == currentSlot) return;
+            // Clear every slot skipped since the last sample, at most the whole ring
+            long stale = currentSlot < 0 ? SLOTS : Math.min(SLOTS, slot - currentSlot);
+            for (long s = slot - stale + 1; s <= slot; s++) {
+                int index = (int) Math.floorMod(s, (long) SLOTS);
+                for (long[] series : nanos) series[index] = 0;
+            }
+            currentSlot = slot;
+            updateThrottle();
+        }
+
+        private void updateThrottle() {
+            boolean over = ModConfig.AGENT_THROTTLE_ENABLED.get()
+                    && getMicrosPerTick() > ModConfig.AGENT_THROTTLE_BUDGET_MICROS.get();
+            if (over && !throttled) {
+                MetricsRegistry.increment("agent_throttled_total");
+            }
+            throttled = over;
+        }
+    }
+
+    // Concurrent only so gauges can be read from the export thread
+    private static final Map<UUID, Profile> PROFILES = new ConcurrentHashMap<>();
+    private static long gameTime;
+
+    /** Set the current tick. Call once per world tick before any agent is updated. */
+    public static void beginTick(long worldGameTime) {
+        gameTime = worldGameTime;
+    }
+
+    /** Add the time since {@code startNanos} to the agent's cost of this kind. */
+    public static void record(VillagerAgentData agent, Cost cost, long startNanos) {
+        recordNanos(agent, cost, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Add a duration measured elsewhere, e.g. a scan that ran on a worker
+     * thread. Server thread only, like {@link #record}.
+     */
+    public static void recordNanos(VillagerAgentData agent, Cost cost, long nanos) {
+        if (!ModConfig.AGENT_PROFILER_ENABLED.get()) return;
+        Profile profile = profile(agent.getVillagerId());
+        profile.nanos[cost.ordinal()][(int) (profile.currentSlot % SLOTS)] += nanos;
+    }
+
+    /**
+     * Whether a throttled agent should sit out this update. Each kind of
+     * update is skipped independently of game time, so an agent that only
+     * farms every third tick is still slowed by the full stride. Call only
+     * once the villager has been found in the world being ticked, so other
+     * dimensions' passes do not count towards the stride.
+     */
+    public static boolean shouldSkip(VillagerAgentData agent) {
+        if (!ModConfig.AGENT_PROFILER_ENABLED.get() || !ModConfig.AGENT_THROTTLE_ENABLED.get()) return false;
+        Profile profile = profile(agent.getVillagerId());
+        if (!profile.throttled) return false;
+        boolean skip = profile.skipCounter++ % ModConfig.AGENT_THROTTLE_STRIDE.get() != 0;
+        if (skip) MetricsRegistry.increment("agent_throttled_skips_total");
+        return skip;
+    }
+
+    /** The {@code limit} most expensive agents over the window, costliest first. */
+    public static List<Profile> top(int limit) {
+        List<Profile> profiles = new ArrayList<>();
+        for (Profile profile : PROFILES.values()) {
+            profile.advanceTo(gameTime);
+            if (profile.getWindowNanos() > 0) profiles.add(profile);
+        }
+        profiles.sort((a, b) -> Long.compare(b.getWindowNanos(), a.getWindowNanos()));
+        return profiles.size() > limit ? profiles.subList(0, limit) : profiles;
+    }
+
+    public static int getThrottledCount() {
+        int count = 0;
+        for (Profile profile : PROFILES.values()) {
+            if (profile.throttled) count++;
+        }
+        return count;
+    }
+
+    public static void forget(UUID villagerId) {
+        PROFILES.remove(villagerId);
+    }
+
+    private static Profile profile(UUID villagerId) {
+        Profile profile = PROFILES.computeIfAbsent(villagerId, Profile::new);
+        profile.advanceTo(gameTime);
+        return profile;
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the block changes villagers make during a tick and applies them
+ * in one pass.
+ *
+ * Changes to the same block are merged, so a harvest followed by a replant
+ * becomes one change from the ripe crop to a seedling, and a change that
+ * ends where the block started is dropped. A change that only moves a
+ * crop's age is applied with the flags vanilla crop growth uses (clients
+ * told, no neighbour updates); anything else notifies neighbours like a
+ * normal placement. Every change of the tick lands before the chunk map
+ * broadcasts, so clients receive them as vanilla's per-section multi-block
+ * packets.
+ *
+ * Farming code reads blocks through {@link #getBlockState} or {@link #view}
+ * so it sees its own pending changes; everything else sees them once
+ * flushed. {@link VillagerAgentManager#tickFarming} flushes before farm
+ * scans run, and the world tick flushes once more after the agents.
+ *
+ * Server thread only.
+ */
+public class BlockChangeBuffer {
+    /** Tell clients, skip neighbour updates: what vanilla uses for crop growth. */
+    private static final int FLAGS_CLIENTS = 2;
+    /** Neighbour updates and clients: what a normal placement or break uses. */
+    private static final int FLAGS_ALL = 3;
+    /** Level event for block break particles and sound. */
+    private static final int BREAK_EVENT = 2001;
+
+    private static final Map<RegistryKey<World>, Map<BlockPos, BlockState>> PENDING = new HashMap<>();
+
+    /** The block at {@code pos}, including a pending change. */
+    static BlockState getBlockState(ServerWorld world, BlockPos pos) {
+        Map<BlockPos, BlockState> pending = PENDING.get(world.dimension());
+        BlockState state = pending == null ? null : pending.get(pos);
+        return state != null ? state : LoadedBlocks.getBlockState(world, pos);
+    }
+
+    /** The world as it will be after the next flush. */
+    static IBlockReader view(ServerWorld world) {
+        if (!ModConfig.BATCHED_BLOCK_UPDATES.get()) return LoadedBlocks.view(world);
+        IBlockReader loaded = LoadedBlocks.view(world);
+        return new IBlockReader() {
+            @Override
+            public BlockState getBlockState(BlockPos pos) {
+                return BlockChangeBuffer.getBlockState(world, pos);
+            }
+
+            @Override
+            public FluidState getFluidState(BlockPos pos) {
+                return getBlockState(pos).getFluidState();
+            }
+
+            @Override
+            public TileEntity getBlockEntity(BlockPos pos) {
+                return loaded.getBlockEntity(pos);
+            }
+        };
+    }
+
+    /** Change the block at {@code pos} at the next flush. */
+    static void set(ServerWorld world, BlockPos pos, BlockState state) {
+        if (!LoadedBlocks.isLoaded(world, pos)) return; // writing would load the chunk
+        if (!ModConfig.BATCHED_BLOCK_UPDATES.get()) {
+            world.setBlock(pos, state, FLAGS_ALL);
+            return;
+        }
+        Map<BlockPos, BlockState> pending = PENDING.computeIfAbsent(world.dimension(), k -> new LinkedHashMap<>());
+        if (pending.put(pos.immutable(), state) != null) {
+            MetricsRegistry.increment("block_changes_merged_total");
+        }
+    }
+
+    /**
+     * Break the block at {@code pos} as {@code breaker}. The break effects
+     * and any drops happen now; the block itself goes at the next flush.
+     */
+    static void destroy(ServerWorld world, BlockPos pos, boolean drops, Entity breaker) {
+        if (!LoadedBlocks.isLoaded(world, pos)) return;
+        if (!ModConfig.BATCHED_BLOCK_UPDATES.get()) {
+            world.destroyBlock(pos, drops, breaker);
+            return;
+        }
+        BlockState state = getBlockState(world, pos);
+        if (state.isAir(world, pos)) return;
+        world.levelEvent(BREAK_EVENT, pos, Block.getId(state));
+        if (drops) Block.dropResources(state, world, pos, null, breaker, ItemStack.EMPTY);
+        set(world, pos, state.getFluidState().createLegacyBlock());
+    }
+
+    /** Apply this world's pending changes. Call at least once per tick. */
+    public static void flush(ServerWorld world) {
+        Map<BlockPos, BlockState> pending = PENDING.get(world.dimension());
+        if (pending == null || pending.isEmpty()) return;
+        long start = System.nanoTime();
+        int applied = 0;
+        for (Map.Entry<BlockPos, BlockState> entry : pending.entrySet()) {
+            BlockPos pos = entry.getKey();
+            BlockState state = entry.getValue();
+            // The chunk may have unloaded since the change was buffered
+            if (!LoadedBlocks.isLoaded(world, pos)) continue;
+            BlockState current = world.getBlockState(pos);
+            if (current == state) {
+                MetricsRegistry.increment("block_changes_merged_total");
+                continue;
+            }
+            world.setBlock(pos, state, current.getBlock() == state.getBlock() ? FLAGS_CLIENTS : FLAGS_ALL);
+            applied++;
+        }
+        pending.clear();
+        MetricsRegistry.add("block_changes_applied_total", applied);
+        MetricsRegistry.recordSince("block_flush_seconds", start);
+    }
+}
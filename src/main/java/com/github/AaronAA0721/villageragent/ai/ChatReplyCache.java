@@ -0,0 +1,189 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local cache of replies to conversation openers ("hi", "what do you sell?").
+ *
+ * Keys are the normalized player message plus the villager's persona class
+ * (profession and personality), so every shrewd farmer shares one entry.
+ * Replies are stored as templates with the villager's and player's names
+ * replaced by placeholders, and a few variants are kept per key. On an exact
+ * miss, stored messages of the same persona class are compared by character
+ * trigram overlap, so "hello there!" can reuse "hello there". Entries are
+ * evicted least-recently-used and expire after a configured time.
+ */
+public class ChatReplyCache {
+    private static final int MAX_VARIANTS = 3;
+    private static final String NAME_SLOT = "{name}";
+    private static final String PLAYER_SLOT = "{player}";
+    private static final String GREETING = "[greeting]";
+
+    private static class Entry {
+        final String personaClass;
+        final String message;
+        final Set<String> trigrams;
+        final List<String> variants = new ArrayList<>();
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(String personaClass, String message) {
+            this.personaClass = personaClass;
+            this.message = message;
+            this.trigrams = trigrams(message);
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > ModConfig.CHAT_CACHE_SIZE.get();
+        }
+    };
+
+    /**
+     * Whether a message is a short opener worth caching. Only the first line
+     * of the day qualifies: later lines depend on the conversation so far.
+     */
+    public static boolean isCacheable(String playerMessage, boolean hasConversation) {
+        if (!ModConfig.CHAT_CACHE_ENABLED.get() || hasConversation) return false;
+        String normalized = normalize(playerMessage);
+        return normalized.isEmpty() || normalized.split(" ").length <= ModConfig.CHAT_CACHE_MAX_WORDS.get();
+    }
+
+    /**
+     * A cached reply filled in for this villager and player, or null on a miss.
+     */
+    public static String get(String profession, String personality, String playerMessage,
+                             String villagerName, String playerName) {
+        String personaClass = personaClass(profession, personality);
+        String message = messageKey(playerMessage);
+
+        String template;
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(personaClass + "|" + message);
+            if (entry == null) {
+                entry = fuzzyMatch(personaClass, message);
+            }
+            if (entry == null || isExpired(entry)) {
+                MetricsRegistry.increment("chat_cache_misses_total");
+                return null;
+            }
+            template = entry.variants.get(ThreadLocalRandom.current().nextInt(entry.variants.size()));
+        }
+        MetricsRegistry.increment("chat_cache_hits_total");
+        return template.replace(NAME_SLOT, villagerName).replace(PLAYER_SLOT, playerName);
+    }
+
+    /**
+     * Store a fresh LLM reply as a template for this persona class and message.
+     */
+    public static void put(String profession, String personality, String playerMessage,
+                           String villagerName, String playerName, String reply) {
+        String personaClass = personaClass(profession, personality);
+        String message = messageKey(playerMessage);
+        String template = replaceWord(replaceWord(reply, villagerName, NAME_SLOT), playerName, PLAYER_SLOT);
+
+        synchronized (ENTRIES) {
+            String key = personaClass + "|" + message;
+            Entry entry = ENTRIES.get(key);
+            if (entry == null || isExpired(entry)) {
+                entry = new Entry(personaClass, message);
+                ENTRIES.put(key, entry);
+            }
+            if (entry.variants.size() < MAX_VARIANTS && !entry.variants.contains(template)) {
+                entry.variants.add(template);
+            }
+        }
+    }
+
+    public static int size() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+
+    public static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    /** Best trigram match within the persona class, or null. Caller holds the lock. */
+    private static Entry fuzzyMatch(String personaClass, String message) {
+        double threshold = ModConfig.CHAT_CACHE_FUZZY_THRESHOLD.get();
+        if (threshold >= 1.0 || GREETING.equals(message)) return null;
+
+        Set<String> query = trigrams(message);
+        Entry best = null;
+        double bestScore = threshold;
+        Iterator<Entry> it = ENTRIES.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (isExpired(entry)) {
+                it.remove();
+                continue;
+            }
+            if (!entry.personaClass.equals(personaClass) || GREETING.equals(entry.message)) continue;
+            double score = jaccard(query, entry.trigrams);
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.createdAt > ModConfig.CHAT_CACHE_TTL_MINUTES.get() * 60_000L;
+    }
+
+    private static String personaClass(String profession, String personality) {
+        return normalize(profession) + "/" + normalize(personality);
+    }
+
+    private static String messageKey(String playerMessage) {
+        String normalized = normalize(playerMessage);
+        return normalized.isEmpty() ? GREETING : normalized;
+    }
+
+    /** Lower-case, letters and digits only, single spaces. */
+    static String normalize(String text) {
+        if (text == null) return "";
+        return text.toLowerCase().replaceAll("[^a-z0-9' ]", " ").replace("'", "").trim().replaceAll("\\s+", " ");
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        String padded = " " + text + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) return 0;
+        int shared = 0;
+        for (String gram : a) {
+            if (b.contains(gram)) shared++;
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    private static String replaceWord(String text, String word, String slot) {
+        if (word == null || word.isEmpty()) return text;
+        return text.replaceAll("\\b" + Pattern.quote(word) + "\\b", Matcher.quoteReplacement(slot));
+    }
+}
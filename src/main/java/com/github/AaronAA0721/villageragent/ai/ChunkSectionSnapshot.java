@@ -0,0 +1,115 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Read-only view of the chunk sections around a point, for block scans that
+ * run off the server thread.
+ *
+ * Capturing only grabs each loaded chunk's section array, so it costs a few
+ * lookups however large the scan. The sections are not copied: the view is
+ * only valid while the server thread is not changing blocks, which is why
+ * {@link FarmScan}s run while the server thread waits for them. Chunks that
+ * are not loaded read as {@link LoadedBlocks#UNLOADED}, and nothing here ever
+ * loads one.
+ *
+ * Reads of unloaded chunks are tallied per snapshot, since a scan can make
+ * hundreds; whoever ran the scan reports them with {@link #reportSkippedReads}.
+ */
+final class ChunkSectionSnapshot implements IBlockReader {
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int widthChunks;
+    private final ChunkSection[][] columns;
+    // Each snapshot is read by one scan on one thread
+    private int skippedReads;
+
+    private ChunkSectionSnapshot(int minChunkX, int minChunkZ, int widthChunks, ChunkSection[][] columns) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.widthChunks = widthChunks;
+        this.columns = columns;
+    }
+
+    /**
+     * Capture the chunks covering {@code radius} blocks around {@code center}.
+     * Server thread only.
+     */
+    static ChunkSectionSnapshot capture(ServerWorld world, BlockPos center, int radius) {
+        int minChunkX = (center.getX() - radius) >> 4;
+        int minChunkZ = (center.getZ() - radius) >> 4;
+        int maxChunkX = (center.getX() + radius) >> 4;
+        int maxChunkZ = (center.getZ() + radius) >> 4;
+        int width = maxChunkX - minChunkX + 1;
+        ChunkSection[][] columns = new ChunkSection[width * (maxChunkZ - minChunkZ + 1)][];
+
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                Chunk chunk = world.getChunkSource().getChunkNow(cx, cz);
+                if (chunk != null) {
+                    columns[(cx - minChunkX) + (cz - minChunkZ) * width] = chunk.getSections();
+                }
+            }
+        }
+        return new ChunkSectionSnapshot(minChunkX, minChunkZ, width, columns);
+    }
+
+    /** The chunk's sections, or null if it was not loaded or is outside the capture. */
+    private ChunkSection[] column(BlockPos pos) {
+        int cx = (pos.getX() >> 4) - minChunkX;
+        int cz = (pos.getZ() >> 4) - minChunkZ;
+        if (cx < 0 || cx >= widthChunks || cz < 0) return null;
+        int index = cx + cz * widthChunks;
+        return index < columns.length ? columns[index] : null;
+    }
+
+    private ChunkSection section(BlockPos pos) {
+        int y = pos.getY();
+        if (y < 0 || y >= 256) return null;
+        ChunkSection[] column = column(pos);
+        if (column == null) return null;
+        ChunkSection section = column[y >> 4];
+        return ChunkSection.isEmpty(section) ? null : section;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        ChunkSection section = section(pos);
+        if (section != null) return section.getBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        if (column(pos) == null) {
+            skippedReads++;
+            return LoadedBlocks.UNLOADED;
+        }
+        return AIR;
+    }
+
+    /** Add this snapshot's reads of unloaded chunks to the metric, and start counting again. */
+    void reportSkippedReads() {
+        if (skippedReads > 0) LoadedBlocks.skipped(skippedReads);
+        skippedReads = 0;
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        ChunkSection section = section(pos);
+        return section == null ? Fluids.EMPTY.defaultFluidState()
+                : section.getFluidState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    /** Block entities are not captured; scans only look at block states. */
+    @Override
+    public TileEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.block.BeetrootBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.FarmlandBlock;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Predicts when known crops will be ready, so farmers can come back when
+ * a field is worth harvesting instead of polling it.
+ *
+ * Every crop a farmer plants or sees is recorded with its age and the
+ * chance that one random tick advances it, which is worked out the way
+ * vanilla {@code CropsBlock.randomTick} does: farmland under and around
+ * the crop, wet farmland counting three times as much as dry, halved when
+ * the same crop is planted in rows on both sides. With {@code
+ * randomTickSpeed} random ticks per 4096 blocks per game tick, that gives
+ * the expected ticks per growth stage. Light is not checked; open fields
+ * see the sky, which lights them well enough day and night.
+ *
+ * Records are re-anchored whenever the crop is seen again. They are only
+ * kept in memory, so after a restart farmers scan as they did before.
+ *
+ * Server thread only, apart from {@link #measure}.
+ */
+public class CropForecast {
+    private static final double BLOCKS_PER_SECTION = 4096.0;
+    /** Records not seen for this long are dropped (three in-game days). */
+    private static final long RECORD_TTL_TICKS = 72_000L;
+    /** Never schedule a revisit further out than one in-game day. */
+    private static final long MAX_REVISIT_DELAY_TICKS = 24_000L;
+
+    /** One crop as measured by a scan; safe to create off the server thread. */
+    static final class Growth {
+        final BlockPos pos;
+        final int age;
+        final int maxAge;
+        final double stageChance;
+
+        Growth(BlockPos pos, int age, int maxAge, double stageChance) {
+            this.pos = pos;
+            this.age = age;
+            this.maxAge = maxAge;
+            this.stageChance = stageChance;
+        }
+    }
+
+    private static final class Record {
+        int age;
+        int maxAge;
+        double stageChance;
+        long observedAt;
+        long plantedAt = -1;
+
+        /** Game tick the crop is expected to reach its final stage. */
+        long maturesAt(int randomTickSpeed) {
+            if (age >= maxAge) return observedAt;
+            if (randomTickSpeed <= 0 || stageChance <= 0) return Long.MAX_VALUE;
+            double ticksPerStage = BLOCKS_PER_SECTION / (randomTickSpeed * stageChance);
+            return observedAt + (long) Math.ceil((maxAge - age) * ticksPerStage);
+        }
+
+        /** Not seen for too long, or seen in another save whose clock ran further. */
+        boolean expired(long gameTime) {
+            return gameTime < observedAt || gameTime - observedAt > RECORD_TTL_TICKS;
+        }
+    }
+
+    private static final Map<RegistryKey<World>, Map<Long, Record>> RECORDS = new HashMap<>();
+    private static volatile int recordCount;
+
+    // ---------------------------------------------------------------
+    //  Measuring (any thread)
+    // ---------------------------------------------------------------
+
+    /** Measure the crop at {@code pos}, or null if there is no farmed crop there. */
+    static Growth measure(IBlockReader world, BlockPos pos) {
+        BlockState state = world.getBlockState(pos);
+        int age = FarmingAction.getCropAge(state);
+        if (age < 0) return null;
+        Block crop = state.getBlock();
+        return new Growth(pos.immutable(), age, FarmingAction.getCropMaxAge(crop), stageChance(world, pos, crop));
+    }
+
+    /** Measure every farmed crop within {@code radius} blocks sideways and two up or down. */
+    static List<Growth> measureAround(IBlockReader world, BlockPos center, int radius) {
+        List<Growth> crops = new ArrayList<>();
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -2; y <= 2; y++) {
+                for (int z = -radius; z <= radius; z++) {
+                    Growth growth = measure(world, center.offset(x, y, z));
+                    if (growth != null) crops.add(growth);
+                }
+            }
+        }
+        return crops;
+    }
+
+    /** Chance that one random tick advances this crop a stage, as in vanilla. */
+    private static double stageChance(IBlockReader world, BlockPos pos, Block crop) {
+        float speed = 1.0F;
+        BlockPos below = pos.below();
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                BlockState soil = world.getBlockState(below.offset(x, 0, z));
+                float bonus = 0.0F;
+                if (soil.getBlock() instanceof FarmlandBlock) {
+                    bonus = soil.getValue(FarmlandBlock.MOISTURE) > 0 ? 3.0F : 1.0F;
+                }
+                if (x != 0 || z != 0) bonus /= 4.0F;
+                speed += bonus;
+            }
+        }
+
+        boolean rowX = world.getBlockState(pos.west()).is(crop) || world.getBlockState(pos.east()).is(crop);
+        boolean rowZ = world.getBlockState(pos.north()).is(crop) || world.getBlockState(pos.south()).is(crop);
+        if (rowX && rowZ) {
+            speed /= 2.0F;
+        } else if (world.getBlockState(pos.north().west()).is(crop) || world.getBlockState(pos.north().east()).is(crop)
+                || world.getBlockState(pos.south().east()).is(crop) || world.getBlockState(pos.south().west()).is(crop)) {
+            speed /= 2.0F;
+        }
+
+        double chance = 1.0 / ((int) (25.0F / speed) + 1);
+        // Beetroots skip a third of their random ticks
+        return crop instanceof BeetrootBlock ? chance * 2.0 / 3.0 : chance;
+    }
+
+    // ---------------------------------------------------------------
+    //  Recording (server thread)
+    // ---------------------------------------------------------------
+
+    static void record(ServerWorld world, List<Growth> crops) {
+        if (!ModConfig.FARM_FORECAST_ENABLED.get()) return;
+        long gameTime = world.getGameTime();
+        Map<Long, Record> records = records(world);
+        for (Growth growth : crops) update(records, growth, gameTime, false);
+        recordCount = count();
+    }
+
+    /**
+     * Re-read the crop at {@code pos} after a farmer changed it.
+     * @param planted whether the farmer just planted it, fixing its planting tick
+     */
+    static void observe(ServerWorld world, BlockPos pos, boolean planted) {
+        if (!ModConfig.FARM_FORECAST_ENABLED.get()) return;
+        Growth growth = measure(BlockChangeBuffer.view(world), pos);
+        Map<Long, Record> records = records(world);
+        if (growth == null) {
+            records.remove(pos.asLong());
+        } else {
+            update(records, growth, world.getGameTime(), planted);
+        }
+        recordCount = count();
+    }
+
+    private static void update(Map<Long, Record> records, Growth growth, long gameTime, boolean planted) {
+        Record record = records.computeIfAbsent(growth.pos.asLong(), k -> new Record());
+        record.age = growth.age;
+        record.maxAge = growth.maxAge;
+        record.stageChance = growth.stageChance;
+        record.observedAt = gameTime;
+        if (planted) record.plantedAt = gameTime;
+    }
+
+    // ---------------------------------------------------------------
+    //  Predictions (server thread)
+    // ---------------------------------------------------------------
+
+    /**
+     * When to come back to a field: the tick by which {@code fraction} of
+     * its known crops should be mature, capped at one day out. Returns -1
+     * if no crop in the field is known.
+     */
+    static long revisitTick(ServerWorld world, Predicate<BlockPos> field, double fraction) {
+        int randomTickSpeed = world.getGameRules().getInt(GameRules.RULE_RANDOMTICKING);
+        long gameTime = world.getGameTime();
+        List<Long> maturity = new ArrayList<>();
+        for (Map.Entry<Long, Record> entry : records(world).entrySet()) {
+            if (!entry.getValue().expired(gameTime) && field.test(BlockPos.of(entry.getKey()))) {
+                maturity.add(entry.getValue().maturesAt(randomTickSpeed));
+            }
+        }
+        if (maturity.isEmpty()) return -1;
+
+        Collections.sort(maturity);
+        int index = Math.max(0, (int) Math.ceil(fraction * maturity.size()) - 1);
+        return Math.min(maturity.get(index), gameTime + MAX_REVISIT_DELAY_TICKS);
+    }
+
+    /**
+     * Crops in the field predicted mature by now that really are. Loaded
+     * crops that turn out not to be ready are re-measured, and records of
+     * crops that are gone are dropped.
+     */
+    static List<BlockPos> dueCrops(ServerWorld world, Predicate<BlockPos> field) {
+        int randomTickSpeed = world.getGameRules().getInt(GameRules.RULE_RANDOMTICKING);
+        long gameTime = world.getGameTime();
+        List<BlockPos> due = new ArrayList<>();
+        Map<Long, Record> records = records(world);
+        Iterator<Map.Entry<Long, Record>> it = records.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Record> entry = it.next();
+            BlockPos pos = BlockPos.of(entry.getKey());
+            if (!field.test(pos) || entry.getValue().maturesAt(randomTickSpeed) > gameTime) continue;
+            if (!LoadedBlocks.isLoaded(world, pos)) continue;
+
+            Growth growth = measure(BlockChangeBuffer.view(world), pos);
+            if (growth == null) {
+                it.remove();
+                MetricsRegistry.increment("farm_forecast_misses_total");
+            } else if (growth.age >= growth.maxAge) {
+                due.add(pos);
+                MetricsRegistry.increment("farm_forecast_hits_total");
+            } else {
+                update(records, growth, gameTime, false);
+                MetricsRegistry.increment("farm_forecast_misses_total");
+            }
+        }
+        recordCount = count();
+        return due;
+    }
+
+    public static int getRecordCount() {
+        return recordCount;
+    }
+
+    /** Drop records nobody has looked at for a while. Call once per tick. */
+    public static void tick(long gameTime) {
+        if (gameTime % 1200 != 0) return;
+        for (Map<Long, Record> records : RECORDS.values()) {
+            records.values().removeIf(r -> r.expired(gameTime));
+        }
+        recordCount = count();
+    }
+
+    /** Forget every record, e.g. when the server stops and another save may be loaded next. */
+    public static void clear() {
+        RECORDS.clear();
+        recordCount = 0;
+    }
+
+    private static Map<Long, Record> records(ServerWorld world) {
+        return RECORDS.computeIfAbsent(world.dimension(), k -> new HashMap<>());
+    }
+
+    private static int count() {
+        int total = 0;
+        for (Map<Long, Record> records : RECORDS.values()) total += records.size();
+        return total;
+    }
+}
@@ -0,0 +1,347 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.block.FarmlandBlock;
+import net.minecraft.entity.ai.brain.memory.MemoryModuleType;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.GlobalPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares a village's fields between its farmers.
+ *
+ * Blocks a farmer is walking to or has queued on its route are reserved,
+ * and hidden from every other farmer until the farmer is done with them or
+ * the reservation times out, so two farmers never walk to the same crop.
+ * Reservations are kept per dimension, so the same coordinates in two
+ * dimensions are separate blocks. Fields are split into plots (connected
+ * farmland), found when a farmer first sees them, and each village's
+ * farmers are assigned to its plots in proportion to plot size. A farmer
+ * works its own plot first and helps elsewhere only when its plot has
+ * nothing in reach.
+ *
+ * Villages are told apart by the farmers' meeting point (the village bell);
+ * farmers without one share a group per dimension.
+ *
+ * Server thread only.
+ */
+public class FarmDispatcher {
+    /** Largest plot one flood fill will map; bigger fields are split at this size. */
+    private static final int MAX_PLOT_BLOCKS = 2048;
+    /** Plots are forgotten and re-detected after this many ticks, picking up changes to the fields. */
+    private static final long PLOT_REFRESH_TICKS = 6000;
+
+    public static final class Plot {
+        private final Set<Long> farmland;
+        private final BlockPos anchor;
+        private final long detectedAt;
+
+        Plot(Set<Long> farmland, BlockPos anchor, long detectedAt) {
+            this.farmland = farmland;
+            this.anchor = anchor;
+            this.detectedAt = detectedAt;
+        }
+
+        public int size() { return farmland.size(); }
+        public BlockPos getAnchor() { return anchor; }
+        boolean contains(BlockPos farmlandPos) { return farmland.contains(farmlandPos.asLong()); }
+
+        /** Due for re-detection, or detected in another save whose clock ran further. */
+        boolean expired(long gameTime) {
+            return gameTime < detectedAt || gameTime - detectedAt >= PLOT_REFRESH_TICKS;
+        }
+    }
+
+    private static final class Village {
+        final List<Plot> plots = new ArrayList<>();
+        final Map<Long, Plot> plotByFarmland = new HashMap<>();
+        final Set<UUID> farmers = new HashSet<>();
+        final Map<UUID, Plot> assignments = new HashMap<>();
+        boolean dirty;
+    }
+
+    private static final class Reservation {
+        final UUID owner;
+        final long reservedAt;
+        long expiresAt;
+
+        Reservation(UUID owner, long reservedAt, long expiresAt) {
+            this.owner = owner;
+            this.reservedAt = reservedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        /** Timed out, or made in another save whose clock ran further. */
+        boolean expired(long gameTime) {
+            return gameTime < reservedAt || expiresAt <= gameTime;
+        }
+    }
+
+    private static final Map<GlobalPos, Village> VILLAGES = new HashMap<>();
+    private static final Map<UUID, GlobalPos> FARMER_VILLAGE = new HashMap<>();
+    // Concurrent only so gauges can be read from the export thread
+    private static final Map<GlobalPos, Reservation> RESERVATIONS = new ConcurrentHashMap<>();
+    private static volatile int plotCount;
+
+    /**
+     * Drop candidates other farmers have reserved and order the rest so the
+     * farmer's own plot comes first, keeping the nearest-first order within
+     * each group. Plots not seen before are detected here.
+     *
+     * @param cropTargets whether the candidates are crops (standing on
+     *                    farmland) or the farmland itself
+     */
+    static List<BlockPos> prioritise(ServerWorld world, VillagerEntity villager, VillagerAgentData agent,
+                                     List<BlockPos> candidates, boolean cropTargets) {
+        if (!ModConfig.FARM_DISPATCHER_ENABLED.get() || candidates.isEmpty()) return candidates;
+        long gameTime = world.getGameTime();
+        UUID farmerId = agent.getVillagerId();
+        Village village = village(villager);
+
+        List<BlockPos> own = new ArrayList<>();
+        List<BlockPos> others = new ArrayList<>();
+        for (BlockPos pos : candidates) {
+            if (!isAvailable(world, pos, farmerId)) {
+                MetricsRegistry.increment("farm_reserved_skips_total");
+                continue;
+            }
+            BlockPos farmlandPos = cropTargets ? pos.below() : pos;
+            Plot plot = village.plotByFarmland.get(farmlandPos.asLong());
+            if (plot == null) plot = detectPlot(world, village, farmlandPos, gameTime);
+            if (plot != null && plot == assignment(village, farmerId)) {
+                own.add(pos);
+            } else {
+                others.add(pos);
+            }
+        }
+        own.addAll(others);
+        return own;
+    }
+
+    /** Whether {@code pos} is free for this farmer: unreserved, reserved by it, or expired. */
+    static boolean isAvailable(World world, BlockPos pos, UUID farmerId) {
+        Reservation reservation = RESERVATIONS.get(GlobalPos.of(world.dimension(), pos));
+        return reservation == null || reservation.owner.equals(farmerId)
+            || reservation.expired(world.getGameTime());
+    }
+
+    /**
+     * Reserve {@code pos} for this farmer, or extend its reservation. Call
+     * again while walking so a slow walk does not lose the target.
+     */
+    static void reserve(World world, BlockPos pos, UUID farmerId) {
+        if (!ModConfig.FARM_DISPATCHER_ENABLED.get()) return;
+        long gameTime = world.getGameTime();
+        long expiresAt = gameTime + ModConfig.FARM_RESERVATION_TIMEOUT_TICKS.get();
+        GlobalPos key = GlobalPos.of(world.dimension(), pos.immutable());
+        Reservation reservation = RESERVATIONS.get(key);
+        if (reservation != null && reservation.owner.equals(farmerId)) {
+            reservation.expiresAt = expiresAt;
+        } else {
+            RESERVATIONS.put(key, new Reservation(farmerId, gameTime, expiresAt));
+        }
+    }
+
+    /** Release {@code pos} if this farmer holds it. */
+    static void release(World world, BlockPos pos, UUID farmerId) {
+        GlobalPos key = GlobalPos.of(world.dimension(), pos);
+        Reservation reservation = RESERVATIONS.get(key);
+        if (reservation != null && reservation.owner.equals(farmerId)) {
+            RESERVATIONS.remove(key);
+        }
+    }
+
+    /** The plot this farmer is assigned to, or null if it has none yet. */
+    public static Plot getAssignedPlot(UUID farmerId) {
+        GlobalPos key = FARMER_VILLAGE.get(farmerId);
+        Village village = key == null ? null : VILLAGES.get(key);
+        return village == null ? null : assignment(village, farmerId);
+    }
+
+    /** One farmland block of each known plot of the village meeting at {@code village}. */
+    static List<BlockPos> getPlotAnchors(GlobalPos village) {
+        Village known = VILLAGES.get(village);
+        if (known == null) return Collections.emptyList();
+        List<BlockPos> anchors = new ArrayList<>();
+        for (Plot plot : known.plots) anchors.add(plot.getAnchor());
+        return anchors;
+    }
+
+    public static int getReservationCount() {
+        return RESERVATIONS.size();
+    }
+
+    public static int getPlotCount() {
+        return plotCount;
+    }
+
+    /** Drop expired reservations and stale plots. Call once per tick. */
+    public static void tick(long gameTime) {
+        if (gameTime % 20 != 0) return;
+        RESERVATIONS.values().removeIf(r -> r.expired(gameTime));
+        int plots = 0;
+        for (Village village : VILLAGES.values()) {
+            if (village.plots.removeIf(p -> p.expired(gameTime))) {
+                village.plotByFarmland.values().removeIf(p -> !village.plots.contains(p));
+                village.dirty = true;
+            }
+            plots += village.plots.size();
+        }
+        plotCount = plots;
+    }
+
+    /** Forget every village, plot and reservation, e.g. when the server stops and another save may be loaded next. */
+    public static void clear() {
+        VILLAGES.clear();
+        FARMER_VILLAGE.clear();
+        RESERVATIONS.clear();
+        plotCount = 0;
+    }
+
+    /** Remove a farmer: release its reservations and hand its plot share to the others. */
+    public static void forget(UUID farmerId) {
+        RESERVATIONS.values().removeIf(r -> r.owner.equals(farmerId));
+        GlobalPos key = FARMER_VILLAGE.remove(farmerId);
+        Village village = key == null ? null : VILLAGES.get(key);
+        if (village != null && village.farmers.remove(farmerId)) {
+            village.assignments.remove(farmerId);
+            village.dirty = true;
+        }
+    }
+
+    private static Village village(VillagerEntity villager) {
+        GlobalPos key = villager.getBrain().getMemory(MemoryModuleType.MEETING_POINT)
+                .orElse(GlobalPos.of(villager.level.dimension(), BlockPos.ZERO));
+        UUID farmerId = villager.getUUID();
+        GlobalPos previous = FARMER_VILLAGE.put(farmerId, key);
+        if (previous != null && !previous.equals(key)) {
+            Village old = VILLAGES.get(previous);
+            if (old != null && old.farmers.remove(farmerId)) {
+                old.assignments.remove(farmerId);
+                old.dirty = true;
+            }
+        }
+        Village village = VILLAGES.computeIfAbsent(key, k -> new Village());
+        if (village.farmers.add(farmerId)) village.dirty = true;
+        return village;
+    }
+
+    private static Plot assignment(Village village, UUID farmerId) {
+        if (village.dirty) {
+            assignPlots(village);
+            village.dirty = false;
+        }
+        return village.assignments.get(farmerId);
+    }
+
+    /**
+     * Share farmers out over plots in proportion to plot size (largest
+     * remainder, so a village with fewer farmers than plots staffs its
+     * biggest plots). Farmers keep their plot while it is within quota.
+     */
+    private static void assignPlots(Village village) {
+        List<Plot> plots = village.plots;
+        if (plots.isEmpty()) {
+            village.assignments.clear();
+            return;
+        }
+
+        int farmers = village.farmers.size();
+        long totalSize = 0;
+        for (Plot plot : plots) totalSize += plot.size();
+
+        Map<Plot, Integer> quota = new HashMap<>();
+        List<Plot> byRemainder = new ArrayList<>(plots);
+        Map<Plot, Double> remainder = new HashMap<>();
+        int assigned = 0;
+        for (Plot plot : plots) {
+            double exact = (double) farmers * plot.size() / totalSize;
+            int whole = (int) exact;
+            quota.put(plot, whole);
+            remainder.put(plot, exact - whole);
+            assigned += whole;
+        }
+        byRemainder.sort((a, b) -> Double.compare(remainder.get(b), remainder.get(a)));
+        for (int i = 0; i < farmers - assigned; i++) {
+            Plot plot = byRemainder.get(i % byRemainder.size());
+            quota.put(plot, quota.get(plot) + 1);
+        }
+
+        Map<UUID, Plot> previous = new HashMap<>(village.assignments);
+        village.assignments.clear();
+        List<UUID> unassigned = new ArrayList<>();
+        List<UUID> farmerIds = new ArrayList<>(village.farmers);
+        Collections.sort(farmerIds);
+        for (UUID farmerId : farmerIds) {
+            Plot plot = previous.get(farmerId);
+            if (plot != null && quota.getOrDefault(plot, 0) > 0) {
+                village.assignments.put(farmerId, plot);
+                quota.put(plot, quota.get(plot) - 1);
+            } else {
+                unassigned.add(farmerId);
+            }
+        }
+        for (UUID farmerId : unassigned) {
+            Plot best = null;
+            for (Plot plot : plots) {
+                if (quota.get(plot) > 0 && (best == null || quota.get(plot) > quota.get(best))) best = plot;
+            }
+            if (best == null) break;
+            village.assignments.put(farmerId, best);
+            quota.put(best, quota.get(best) - 1);
+        }
+    }
+
+    /**
+     * Flood fill the farmland connected to {@code start} (sideways, one
+     * block up or down) into a new plot. Only loaded chunks are read.
+     */
+    private static Plot detectPlot(ServerWorld world, Village village, BlockPos start, long gameTime) {
+        if (!isFarmland(world, start)) return null;
+
+        Set<Long> farmland = new HashSet<>();
+        ArrayDeque<BlockPos> queue = new ArrayDeque<>();
+        farmland.add(start.asLong());
+        queue.add(start.immutable());
+        while (!queue.isEmpty() && farmland.size() < MAX_PLOT_BLOCKS) {
+            BlockPos pos = queue.poll();
+            for (Direction direction : Direction.Plane.HORIZONTAL) {
+                BlockPos side = pos.relative(direction);
+                for (int dy = -1; dy <= 1; dy++) {
+                    BlockPos next = side.above(dy);
+                    long key = next.asLong();
+                    if (farmland.contains(key) || village.plotByFarmland.containsKey(key)) continue;
+                    if (!isFarmland(world, next)) continue;
+                    farmland.add(key);
+                    queue.add(next);
+                }
+            }
+        }
+
+        Plot plot = new Plot(farmland, start.immutable(), gameTime);
+        village.plots.add(plot);
+        for (long key : farmland) village.plotByFarmland.put(key, plot);
+        village.dirty = true;
+        MetricsRegistry.increment("farm_plots_detected_total");
+        return plot;
+    }
+
+    private static boolean isFarmland(ServerWorld world, BlockPos pos) {
+        return LoadedBlocks.getBlockState(world, pos).getBlock() instanceof FarmlandBlock;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orders a farming session's target blocks into a short walk.
+ *
+ * The tour starts where the villager stands and visits every target once,
+ * without returning. It is built nearest-neighbour first, then improved
+ * with 2-opt (reversing any stretch of the tour that makes it shorter)
+ * until no reversal helps or the pass limit is hit. Distances are straight
+ * lines; paths around obstacles are left to the navigator.
+ */
+final class FarmRoute {
+    private static final int MAX_TWO_OPT_PASSES = 8;
+
+    private FarmRoute() {}
+
+    /** Visiting order for {@code targets} starting from {@code start}. */
+    static List<BlockPos> plan(BlockPos start, List<BlockPos> targets) {
+        int n = targets.size();
+        if (n <= 1) return new ArrayList<>(targets);
+
+        // Index 0 is the start, 1..n the targets
+        double[][] dist = new double[n + 1][n + 1];
+        BlockPos[] points = new BlockPos[n + 1];
+        points[0] = start;
+        for (int i = 0; i < n; i++) points[i + 1] = targets.get(i);
+        for (int i = 0; i <= n; i++) {
+            for (int j = i + 1; j <= n; j++) {
+                dist[i][j] = dist[j][i] = Math.sqrt(points[i].distSqr(points[j]));
+            }
+        }
+
+        int[] tour = nearestNeighbour(dist, n);
+        twoOpt(tour, dist);
+
+        List<BlockPos> ordered = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) ordered.add(points[tour[i]]);
+        return ordered;
+    }
+
+    private static int[] nearestNeighbour(double[][] dist, int n) {
+        int[] tour = new int[n + 1];
+        boolean[] visited = new boolean[n + 1];
+        visited[0] = true;
+        int current = 0;
+        for (int step = 1; step <= n; step++) {
+            int next = -1;
+            for (int candidate = 1; candidate <= n; candidate++) {
+                if (!visited[candidate] && (next < 0 || dist[current][candidate] < dist[current][next])) {
+                    next = candidate;
+                }
+            }
+            tour[step] = next;
+            visited[next] = true;
+            current = next;
+        }
+        return tour;
+    }
+
+    /** 2-opt on an open tour whose first point is fixed. */
+    private static void twoOpt(int[] tour, double[][] dist) {
+        int last = tour.length - 1;
+        for (int pass = 0; pass < MAX_TWO_OPT_PASSES; pass++) {
+            boolean improved = false;
+            for (int i = 1; i < last; i++) {
+                for (int j = i + 1; j <= last; j++) {
+                    double before = dist[tour[i - 1]][tour[i]];
+                    double after = dist[tour[i - 1]][tour[j]];
+                    if (j < last) {
+                        before += dist[tour[j]][tour[j + 1]];
+                        after += dist[tour[i]][tour[j + 1]];
+                    }
+                    if (after < before - 1e-9) {
+                        reverse(tour, i, j);
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved) return;
+        }
+    }
+
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int tmp = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = tmp;
+        }
+    }
+
+    /** Straight-line length of walking {@code route} from {@code start}, for logging. */
+    static double length(BlockPos start, List<BlockPos> route) {
+        double total = 0;
+        BlockPos previous = start;
+        for (BlockPos pos : route) {
+            total += Math.sqrt(previous.distSqr(pos));
+            previous = pos;
+        }
+        return total;
+    }
+}
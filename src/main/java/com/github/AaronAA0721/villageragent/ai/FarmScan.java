@@ -0,0 +1,113 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.util.math.BlockPos;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * One farmer's block search for this tick, split from acting on it so that
+ * every farmer's search can run in parallel.
+ *
+ * The server thread creates scans while walking the farmers (phase one
+ * setup: position, look direction and a {@link ChunkSectionSnapshot} are
+ * captured), {@link #runAll} searches them on a ForkJoin pool while the
+ * server thread waits, and the results are then applied serially, where
+ * reachability checks, navigation and state changes happen.
+ */
+final class FarmScan {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static ForkJoinPool pool;
+
+    final VillagerAgentData agent;
+    final VillagerEntity villager;
+    /** Full 360° scan while farming; otherwise the idle forward-cone glance. */
+    final boolean full;
+    final boolean withFarmland;
+    private final boolean withForecast;
+    private final ChunkSectionSnapshot blocks;
+    private final BlockPos center;
+    private final float headYaw;
+
+    List<BlockPos> crops = Collections.emptyList();
+    List<BlockPos> farmland = Collections.emptyList();
+    BlockPos coneCrop;
+    BlockPos coneFarmland;
+    List<CropForecast.Growth> growing = Collections.emptyList();
+    long scanNanos;
+    private volatile boolean done;
+
+    FarmScan(VillagerAgentData agent, VillagerEntity villager, ChunkSectionSnapshot blocks,
+             boolean full, boolean withFarmland) {
+        this.agent = agent;
+        this.villager = villager;
+        this.blocks = blocks;
+        this.full = full;
+        this.withFarmland = withFarmland;
+        this.withForecast = ModConfig.FARM_FORECAST_ENABLED.get();
+        this.center = villager.blockPosition();
+        this.headYaw = villager.yHeadRot;
+    }
+
+    /** Search the snapshot. Safe on any thread; touches nothing but the snapshot, this scan and metrics. */
+    void run() {
+        long start = System.nanoTime();
+        if (full) {
+            crops = FarmingAction.findMatureCropsSorted(blocks, center);
+            // Farmland is wanted even when crops were found, in case none of them is reachable
+            if (withFarmland) {
+                farmland = FarmingAction.findEmptyFarmlandSorted(blocks, center);
+            }
+            if (withForecast) {
+                growing = CropForecast.measureAround(blocks, center, FarmingAction.SCAN_RADIUS);
+            }
+        } else {
+            coneCrop = FarmingAction.findNearestMatureCrop(blocks, center, headYaw);
+            if (coneCrop == null && withFarmland) {
+                coneFarmland = FarmingAction.findNearestEmptyFarmland(blocks, center, headYaw);
+            }
+        }
+        blocks.reportSkippedReads();
+        scanNanos = System.nanoTime() - start;
+        done = true;
+    }
+
+    /**
+     * Run every scan, in parallel when there are enough to be worth it, and
+     * return once all are done. Server thread only; no blocks may change
+     * until this returns.
+     */
+    static void runAll(List<FarmScan> scans) {
+        if (scans.isEmpty()) return;
+        if (ModConfig.FARM_SCAN_PARALLEL.get() && scans.size() >= ModConfig.FARM_SCAN_PARALLEL_MIN_SCANS.get()) {
+            try {
+                pool().submit(() -> scans.parallelStream().forEach(FarmScan::run)).join();
+            } catch (RuntimeException e) {
+                LOGGER.error("Parallel farm scan failed, finishing serially", e);
+            }
+        }
+        for (FarmScan scan : scans) {
+            if (!scan.done) scan.run();
+        }
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            int threads = ModConfig.FARM_SCAN_THREADS.get();
+            if (threads <= 0) threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            pool = new ForkJoinPool(threads, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("VillagerAgent-FarmScan-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+}
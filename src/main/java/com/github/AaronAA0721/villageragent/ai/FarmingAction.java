@@ -1,5 +1,7 @@
 package com.github.AaronAA0721.villageragent.ai;
 
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
 import net.minecraft.block.*;
 import net.minecraft.entity.merchant.villager.VillagerEntity;
 import net.minecraft.item.Item;
@@ -7,6 +9,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
 import net.minecraft.state.IntegerProperty;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
 import net.minecraft.world.server.ServerWorld;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,7 +23,11 @@ import java.util.*;
  * 1. Scan for a target block within sight range
  * 2. Walk toward it using the villager's navigation
  * 3. When within reach (1 block), perform the action on that single block
- * 4. Repeat — dropped items are picked up by the general item attraction system
+ * 4. Repeat — harvested drops go straight into the agent's inventory (or, with
+ *    farm_direct_harvest off, are picked up by the general item attraction system)
+ *
+ * Scans and block checks only read blocks, so they take an {@link IBlockReader}
+ * and can run against any block source, not just a live world.
  */
 public class FarmingAction {
     private static final Logger LOGGER = LogManager.getLogger();
@@ -55,6 +62,9 @@ public class FarmingAction {
 
     private static final Random RANDOM = new Random();
 
+    private static final String SCAN_MATURE_CROPS = MetricsRegistry.name("farm_scan_seconds", "target", "mature_crop");
+    private static final String SCAN_EMPTY_FARMLAND = MetricsRegistry.name("farm_scan_seconds", "target", "empty_farmland");
+
     static {
         SEED_TO_CROP.put(Items.WHEAT_SEEDS, Blocks.WHEAT);
         SEED_TO_CROP.put(Items.CARROT, Blocks.CARROTS);
@@ -87,7 +97,8 @@ public class FarmingAction {
      * @param headYaw the villager's head yaw in degrees (from {@code villager.yHeadRot})
      * @return the BlockPos of the closest visible mature crop, or null
      */
-    public static BlockPos findNearestMatureCrop(ServerWorld world, BlockPos center, float headYaw) {
+    public static BlockPos findNearestMatureCrop(IBlockReader world, BlockPos center, float headYaw) {
+        long start = System.nanoTime();
         double lookX = lookDirX(headYaw);
         double lookZ = lookDirZ(headYaw);
 
@@ -109,6 +120,7 @@ public class FarmingAction {
                 }
             }
         }
+        MetricsRegistry.recordSince(SCAN_MATURE_CROPS, start);
         return best;
     }
 
@@ -117,7 +129,8 @@ public class FarmingAction {
      * @param headYaw the villager's head yaw in degrees (from {@code villager.yHeadRot})
      * @return the BlockPos of the closest visible empty farmland, or null
      */
-    public static BlockPos findNearestEmptyFarmland(ServerWorld world, BlockPos center, float headYaw) {
+    public static BlockPos findNearestEmptyFarmland(IBlockReader world, BlockPos center, float headYaw) {
+        long start = System.nanoTime();
         double lookX = lookDirX(headYaw);
         double lookZ = lookDirZ(headYaw);
 
@@ -139,6 +152,7 @@ public class FarmingAction {
                 }
             }
         }
+        MetricsRegistry.recordSince(SCAN_EMPTY_FARMLAND, start);
         return best;
     }
 
@@ -151,7 +165,8 @@ public class FarmingAction {
     /**
      * Find all mature crops in any direction (full 360°), sorted nearest-first.
      */
-    public static List<BlockPos> findMatureCropsSorted(ServerWorld world, BlockPos center) {
+    public static List<BlockPos> findMatureCropsSorted(IBlockReader world, BlockPos center) {
+        long start = System.nanoTime();
         List<BlockPos> results = new ArrayList<>();
         for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
             for (int y = -SCAN_HEIGHT; y <= SCAN_HEIGHT; y++) {
@@ -164,13 +179,15 @@ public class FarmingAction {
             }
         }
         results.sort(Comparator.comparingDouble(p -> p.distSqr(center)));
+        MetricsRegistry.recordSince(SCAN_MATURE_CROPS, start);
         return results;
     }
 
     /**
      * Find all empty farmland in any direction (full 360°), sorted nearest-first.
      */
-    public static List<BlockPos> findEmptyFarmlandSorted(ServerWorld world, BlockPos center) {
+    public static List<BlockPos> findEmptyFarmlandSorted(IBlockReader world, BlockPos center) {
+        long start = System.nanoTime();
         List<BlockPos> results = new ArrayList<>();
         for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
             for (int y = -SCAN_HEIGHT; y <= SCAN_HEIGHT; y++) {
@@ -183,6 +200,7 @@ public class FarmingAction {
             }
         }
         results.sort(Comparator.comparingDouble(p -> p.distSqr(center)));
+        MetricsRegistry.recordSince(SCAN_EMPTY_FARMLAND, start);
         return results;
     }
 
@@ -222,7 +240,7 @@ public class FarmingAction {
     // ---------------------------------------------------------------
 
     /** Check whether the block at pos is a fully-grown crop. */
-    public static boolean isMatureCrop(ServerWorld world, BlockPos pos) {
+    public static boolean isMatureCrop(IBlockReader world, BlockPos pos) {
         BlockState state = world.getBlockState(pos);
         Block block = state.getBlock();
         if (!CROP_AGE_PROPERTIES.containsKey(block)) return false;
@@ -231,8 +249,19 @@ public class FarmingAction {
         return state.getValue(ageProp) >= maxAge;
     }
 
+    /** Growth stage of a crop block, or -1 if the state is not a crop villagers farm. */
+    static int getCropAge(BlockState state) {
+        IntegerProperty ageProp = CROP_AGE_PROPERTIES.get(state.getBlock());
+        return ageProp == null ? -1 : state.getValue(ageProp);
+    }
+
+    /** Final growth stage of a crop block villagers farm. */
+    static int getCropMaxAge(Block block) {
+        return CROP_MAX_AGE.get(block);
+    }
+
     /** Check whether the block at pos is farmland with air above it. */
-    public static boolean isEmptyFarmland(ServerWorld world, BlockPos pos) {
+    public static boolean isEmptyFarmland(IBlockReader world, BlockPos pos) {
         BlockState state = world.getBlockState(pos);
         if (!(state.getBlock() instanceof FarmlandBlock)) return false;
         BlockPos above = pos.above();
@@ -250,7 +279,7 @@ public class FarmingAction {
      */
     public static Block harvestBlockAt(VillagerEntity villager, ServerWorld world,
                                           VillagerAgentData agent, BlockPos cropPos) {
-        BlockState state = world.getBlockState(cropPos);
+        BlockState state = BlockChangeBuffer.getBlockState(world, cropPos);
         Block block = state.getBlock();
 
         if (!CROP_AGE_PROPERTIES.containsKey(block)) {
@@ -258,15 +287,41 @@ public class FarmingAction {
             return null;
         }
 
-        // Break the crop — drops items into the world.
-        // Items will be picked up by the general item attraction system.
-        world.destroyBlock(cropPos, true);
+        if (ModConfig.FARM_DIRECT_HARVEST.get()) {
+            harvestIntoInventory(villager, world, agent, state, cropPos);
+        } else {
+            // Break the crop — drops items into the world.
+            // Items will be picked up by the general item attraction system.
+            BlockChangeBuffer.destroy(world, cropPos, true, null);
+        }
 
         agent.addMemory("Harvested " + block.getRegistryName() + " at " + cropPos);
         LOGGER.info(agent.getName() + " harvested " + block.getRegistryName() + " at " + cropPos);
         return block;
     }
 
+    /**
+     * Roll the crop's loot table as if the villager broke it with its held
+     * item, and put the drops in the agent's inventory. Only what does not
+     * fit is dropped into the world, for the item attraction system.
+     */
+    private static void harvestIntoInventory(VillagerEntity villager, ServerWorld world, VillagerAgentData agent,
+                                             BlockState state, BlockPos cropPos) {
+        List<ItemStack> drops = Block.getDrops(state, world, cropPos, null, villager, villager.getMainHandItem());
+        BlockChangeBuffer.destroy(world, cropPos, false, villager);
+        for (ItemStack drop : drops) {
+            int count = drop.getCount();
+            // addItem leaves whatever did not fit in the stack
+            if (agent.getInventory().addItem(drop) || drop.isEmpty()) {
+                MetricsRegistry.add("farm_harvest_direct_items_total", count);
+                continue;
+            }
+            MetricsRegistry.add("farm_harvest_direct_items_total", count - drop.getCount());
+            MetricsRegistry.add("farm_harvest_overflow_items_total", drop.getCount());
+            Block.popResource(world, cropPos, drop);
+        }
+    }
+
     /**
      * Plant ONE seed on the farmland block at the given position.
      * The crop is placed on the block above the farmland.
@@ -277,8 +332,9 @@ public class FarmingAction {
         BlockPos plantPos = farmlandPos.above();
 
         // Validate the spot is still valid
-        if (!world.getBlockState(plantPos).isAir(world, plantPos)) return false;
-        if (!(world.getBlockState(farmlandPos).getBlock() instanceof FarmlandBlock)) return false;
+        IBlockReader blocks = BlockChangeBuffer.view(world);
+        if (!blocks.getBlockState(plantPos).isAir(blocks, plantPos)) return false;
+        if (!(blocks.getBlockState(farmlandPos).getBlock() instanceof FarmlandBlock)) return false;
 
         // Try each seed type the villager has
         for (Map.Entry<Item, Block> entry : SEED_TO_CROP.entrySet()) {
@@ -290,7 +346,7 @@ public class FarmingAction {
             if (count <= 0) continue;
 
             // Place the crop at age 0
-            world.setBlock(plantPos, cropBlock.defaultBlockState(), 3);
+            BlockChangeBuffer.set(world, plantPos, cropBlock.defaultBlockState());
 
             // Remove one seed from inventory
             agent.getInventory().removeItem(seedStack, 1);
@@ -316,8 +372,9 @@ public class FarmingAction {
         BlockPos plantPos = farmlandPos.above();
 
         // Validate the spot is still valid
-        if (!world.getBlockState(plantPos).isAir(world, plantPos)) return false;
-        if (!(world.getBlockState(farmlandPos).getBlock() instanceof FarmlandBlock)) return false;
+        IBlockReader blocks = BlockChangeBuffer.view(world);
+        if (!blocks.getBlockState(plantPos).isAir(blocks, plantPos)) return false;
+        if (!(blocks.getBlockState(farmlandPos).getBlock() instanceof FarmlandBlock)) return false;
 
         // Try the requested crop type first
         if (cropBlock != null) {
@@ -325,7 +382,7 @@ public class FarmingAction {
             if (seedItem != null) {
                 ItemStack seedStack = new ItemStack(seedItem);
                 if (agent.getInventory().countItem(seedStack) > 0) {
-                    world.setBlock(plantPos, cropBlock.defaultBlockState(), 3);
+                    BlockChangeBuffer.set(world, plantPos, cropBlock.defaultBlockState());
                     agent.getInventory().removeItem(seedStack, 1);
                     agent.addMemory("Planted " + seedItem.getRegistryName() + " at " + plantPos);
                     LOGGER.info(agent.getName() + " planted " + seedItem.getRegistryName() + " at " + plantPos);
@@ -344,7 +401,7 @@ public class FarmingAction {
      * @param farmlandPos the farmland position to check neighbors of
      * @return the crop Block found adjacent, or null if none
      */
-    public static Block findAdjacentCropType(ServerWorld world, BlockPos farmlandPos) {
+    public static Block findAdjacentCropType(IBlockReader world, BlockPos farmlandPos) {
         BlockPos[] neighbors = {
             farmlandPos.north(), farmlandPos.south(),
             farmlandPos.east(), farmlandPos.west()
@@ -370,7 +427,7 @@ public class FarmingAction {
     public static boolean plantSmartAt(VillagerEntity villager, ServerWorld world,
                                         VillagerAgentData agent, BlockPos farmlandPos) {
         // Check what crop is growing next to this farmland
-        Block adjacentCrop = findAdjacentCropType(world, farmlandPos);
+        Block adjacentCrop = findAdjacentCropType(BlockChangeBuffer.view(world), farmlandPos);
 
         if (adjacentCrop != null) {
             // Try to plant the same crop; falls back to any seed if unavailable
@@ -0,0 +1,133 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.mojang.datafixers.util.Pair;
+import net.minecraft.entity.ai.brain.Brain;
+import net.minecraft.entity.ai.brain.memory.MemoryModuleStatus;
+import net.minecraft.entity.ai.brain.memory.MemoryModuleType;
+import net.minecraft.entity.ai.brain.memory.WalkTarget;
+import net.minecraft.entity.ai.brain.schedule.Activity;
+import net.minecraft.entity.ai.brain.task.Task;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Brain task that walks a farmer to its current farming target.
+ *
+ * While the agent has a farming action on the way, the task keeps the
+ * villager's {@code WALK_TARGET} memory on the target block (or the next
+ * waypoint of a long trip), and vanilla's
+ * {@code WalkToTargetTask} follows it. That task only computes a new path
+ * when the target moves or the old path fails, and vanilla strolling and
+ * wandering tasks never start while a walk target is set. The task runs in
+ * the always-on CORE activity, so it works whatever the villager's
+ * schedule says. If another task (e.g. panicking) takes the walk target,
+ * it is put back once that task lets go.
+ *
+ * When the pathfinder gives up, vanilla records
+ * {@code CANT_REACH_WALK_TARGET_SINCE}; the task then stops asserting the
+ * target and {@link #isUnreachable} tells the farming state machine to move
+ * on.
+ */
+public class FarmingWalkTask extends Task<VillagerEntity> {
+    private static final float WALK_SPEED = 0.6F;
+    /** Manhattan distance counted as arrived; matches FarmingAction.INTERACT_RANGE_SQ. */
+    private static final int CLOSE_ENOUGH = 1;
+
+    // Brains are replaced when a villager changes profession, so remember which ones have the task
+    private static final Set<Brain<?>> INSTALLED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /** The walk target this task last set or found in place; one task instance per brain. */
+    private BlockPos assertedTarget;
+
+    private FarmingWalkTask() {
+        super(ImmutableMap.of(MemoryModuleType.WALK_TARGET, MemoryModuleStatus.REGISTERED));
+    }
+
+    /** Add the task to the villager's current brain, once. Server thread only. */
+    public static void ensureInstalled(VillagerEntity villager) {
+        Brain<VillagerEntity> brain = villager.getBrain();
+        if (INSTALLED.add(brain)) {
+            brain.addActivity(Activity.CORE, ImmutableList.of(Pair.of(0, new FarmingWalkTask())));
+        }
+    }
+
+    /** Point the villager's walk target at the action's next waypoint or target block now, rather than on the next brain tick. */
+    static void walkTo(VillagerEntity villager, VillagerAction action) {
+        ensureInstalled(villager);
+        villager.getBrain().setMemory(MemoryModuleType.WALK_TARGET,
+                new WalkTarget(action.getWalkTarget(), WALK_SPEED, CLOSE_ENOUGH));
+    }
+
+    /** Whether vanilla's pathfinder has given up on this action's target since the walk began. */
+    static boolean isUnreachable(VillagerEntity villager, VillagerAction action) {
+        Optional<Long> since = villager.getBrain().getMemory(MemoryModuleType.CANT_REACH_WALK_TARGET_SINCE);
+        return since.isPresent() && since.get() >= action.getWalkStartTick();
+    }
+
+    @Override
+    protected boolean checkExtraStartConditions(ServerWorld world, VillagerEntity villager) {
+        VillagerAction action = walkingAction(villager);
+        return action != null && !isUnreachable(villager, action);
+    }
+
+    @Override
+    protected boolean canStillUse(ServerWorld world, VillagerEntity villager, long gameTime) {
+        return checkExtraStartConditions(world, villager);
+    }
+
+    /** Runs for as long as the action lasts rather than a fixed duration. */
+    @Override
+    protected boolean timedOut(long gameTime) {
+        return false;
+    }
+
+    @Override
+    protected void start(ServerWorld world, VillagerEntity villager, long gameTime) {
+        tick(world, villager, gameTime);
+    }
+
+    @Override
+    protected void tick(ServerWorld world, VillagerEntity villager, long gameTime) {
+        VillagerAction action = walkingAction(villager);
+        if (action == null) return;
+        BlockPos target = action.getWalkTarget();
+        assertedTarget = target;
+        if (isWalkTarget(villager, target)) return;
+        // Only reached when nothing else holds the walk target: strolling tasks need it absent to start
+        villager.getBrain().setMemory(MemoryModuleType.WALK_TARGET, new WalkTarget(target, WALK_SPEED, CLOSE_ENOUGH));
+        MetricsRegistry.increment("farm_walk_target_sets_total");
+    }
+
+    /** Clear a walk target left over from an abandoned action so the villager is free to stroll again. */
+    @Override
+    protected void stop(ServerWorld world, VillagerEntity villager, long gameTime) {
+        if (assertedTarget != null && isWalkTarget(villager, assertedTarget)) {
+            villager.getBrain().eraseMemory(MemoryModuleType.WALK_TARGET);
+        }
+        assertedTarget = null;
+    }
+
+    private static boolean isWalkTarget(VillagerEntity villager, BlockPos target) {
+        Optional<WalkTarget> current = villager.getBrain().getMemory(MemoryModuleType.WALK_TARGET);
+        return current.isPresent() && current.get().getTarget().currentBlockPosition().equals(target);
+    }
+
+    private static VillagerAction walkingAction(VillagerEntity villager) {
+        VillagerAgentData agent = VillagerAgentManager.getAgent(villager.getUUID());
+        if (agent == null) return null;
+        VillagerAction action = agent.getCurrentAction();
+        if (action == null || action.getTargetBlockPos() == null
+                || action.getPhase() != VillagerAction.ActionPhase.WALKING) return null;
+        VillagerAction.ActionType type = action.getActionType();
+        return type == VillagerAction.ActionType.HARVEST || type == VillagerAction.ActionType.GROW ? action : null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+/**
+ * One configured LLM backend: a provider type plus the model, URL and key to
+ * call it with. Several endpoints may share a type (e.g. two Ollama hosts).
+ */
+public class LLMEndpoint {
+    private final String name;
+    private final String type;
+    private final String model;
+    private final String url;
+    private final String apiKey;
+
+    public LLMEndpoint(String name, String type, String model, String url, String apiKey) {
+        this.name = name;
+        this.type = type.toLowerCase();
+        this.model = model;
+        this.url = url;
+        this.apiKey = apiKey != null ? apiKey : "";
+    }
+
+    public String getName() { return name; }
+    public String getType() { return type; }
+    public String getModel() { return model; }
+    public String getUrl() { return url; }
+    public String getApiKey() { return apiKey; }
+
+    public ProviderHealth getHealth() {
+        return ProviderHealth.forProvider(name);
+    }
+
+    /** Remote APIs need a key; the local Ollama server and the stub do not. */
+    public boolean isConfigured() {
+        return "ollama".equals(type) || "stub".equals(type) || !apiKey.trim().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + type + ", " + model + ")";
+    }
+}
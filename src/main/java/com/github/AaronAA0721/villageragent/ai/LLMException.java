@@ -0,0 +1,41 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import java.io.IOException;
+
+/**
+ * Failure talking to an LLM provider.
+ * Carries the HTTP status (or -1 when the request never got a response) and
+ * the in-character line a villager should say instead of an answer.
+ */
+public class LLMException extends IOException {
+    private final int statusCode;
+    private final String fallbackReply;
+    private final long retryAfterMs;
+
+    public LLMException(String message, String fallbackReply) {
+        this(message, -1, fallbackReply);
+    }
+
+    public LLMException(String message, int statusCode, String fallbackReply) {
+        this(message, statusCode, fallbackReply, -1);
+    }
+
+    /**
+     * @param retryAfterMs delay the provider asked for via {@code Retry-After}, or -1
+     */
+    public LLMException(String message, int statusCode, String fallbackReply, long retryAfterMs) {
+        super(message);
+        this.statusCode = statusCode;
+        this.fallbackReply = fallbackReply;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public int getStatusCode() { return statusCode; }
+    public String getFallbackReply() { return fallbackReply; }
+    public long getRetryAfterMs() { return retryAfterMs; }
+
+    /** Rate limits and server errors are worth retrying; other HTTP errors are not. */
+    public boolean isTransient() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
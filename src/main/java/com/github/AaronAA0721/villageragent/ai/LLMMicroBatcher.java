@@ -0,0 +1,134 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Coalesces background LLM requests of one kind into a single multi-item call.
+ *
+ * Requests submitted within {@code llm_batch_window_ms} of the first pending
+ * one (or until {@code llm_batch_max_items} are waiting) are sent as one
+ * prompt that asks for a JSON array; the parsed items are handed back to the
+ * callers' futures in submission order. A village spawning twenty villagers
+ * therefore costs a few requests instead of twenty.
+ *
+ * @param <I> per-caller input (may be {@link Void} when every item is alike)
+ * @param <O> parsed per-caller result
+ */
+public class LLMMicroBatcher<I, O> {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "VillagerAgent-LLM-Batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Pending<I, O> {
+        final I input;
+        final CompletableFuture<O> future = new CompletableFuture<>();
+
+        Pending(I input) { this.input = input; }
+    }
+
+    private final String kind;
+    private final Function<List<I>, LLMPrompt> promptBuilder;
+    private final Function<String, List<O>> parser;
+    private final List<Pending<I, O>> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param kind          metrics label (e.g. "identity")
+     * @param promptBuilder builds one prompt asking for {@code inputs.size()} results
+     * @param parser        turns the raw reply into results, in input order
+     */
+    public LLMMicroBatcher(String kind, Function<List<I>, LLMPrompt> promptBuilder, Function<String, List<O>> parser) {
+        this.kind = kind;
+        this.promptBuilder = promptBuilder;
+        this.parser = parser;
+    }
+
+    public CompletableFuture<O> submit(I input) {
+        Pending<I, O> request = new Pending<>(input);
+        int windowMs = ModConfig.LLM_BATCH_WINDOW_MS.get();
+        int maxItems = ModConfig.LLM_BATCH_MAX_ITEMS.get();
+
+        List<Pending<I, O>> ready = null;
+        synchronized (this) {
+            pending.add(request);
+            if (windowMs <= 0 || pending.size() >= maxItems) {
+                ready = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = FLUSHER.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) send(ready);
+        return request.future;
+    }
+
+    private void flush() {
+        List<Pending<I, O>> ready;
+        synchronized (this) {
+            ready = drain();
+        }
+        if (!ready.isEmpty()) send(ready);
+    }
+
+    /** Take everything pending and cancel the timer. Caller holds the lock. */
+    private List<Pending<I, O>> drain() {
+        List<Pending<I, O>> batch = new ArrayList<>(pending);
+        pending.clear();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(List<Pending<I, O>> batch) {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Pending<I, O> request : batch) {
+            inputs.add(request.input);
+        }
+
+        MetricsRegistry.increment(MetricsRegistry.name("llm_batches_total", "kind", kind));
+        MetricsRegistry.add(MetricsRegistry.name("llm_batched_items_total", "kind", kind), batch.size());
+        LOGGER.debug("Sending " + kind + " batch of " + batch.size());
+
+        LLMService.queryLLMStrict(promptBuilder.apply(inputs)).whenComplete((response, error) -> {
+            if (error != null) {
+                for (Pending<I, O> request : batch) {
+                    request.future.completeExceptionally(error);
+                }
+                return;
+            }
+
+            List<O> results;
+            try {
+                results = parser.apply(response);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not parse " + kind + " batch reply: " + e.getMessage());
+                for (Pending<I, O> request : batch) {
+                    request.future.completeExceptionally(e);
+                }
+                return;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (i < results.size()) {
+                    batch.get(i).future.complete(results.get(i));
+                } else {
+                    batch.get(i).future.completeExceptionally(new LLMException(
+                            kind + " batch reply had only " + results.size() + " of " + batch.size() + " items", ""));
+                }
+            }
+        });
+    }
+}
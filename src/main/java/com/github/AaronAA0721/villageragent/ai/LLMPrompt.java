@@ -0,0 +1,80 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+/**
+ * A prompt split by how often its parts change, so providers can cache the
+ * stable part.
+ *
+ * Layout sent to every provider, in this order:
+ * 1. staticPrefix    — persona and rules; identical for every request a villager makes
+ * 2. volatileContext — inventory, memories, history; changes between requests
+ * 3. userPrompt      — the actual question for this turn
+ *
+ * Keeping anything volatile out of the prefix is what lets Anthropic
+ * {@code cache_control} breakpoints and OpenAI/Gemini/Ollama automatic prefix
+ * caching hit on repeat conversations.
+ */
+public class LLMPrompt {
+    /** What the request is for; {@link LLMRouter} routes each class separately. */
+    public enum RequestClass {
+        CHAT,       // a player is waiting on the reply
+        TRADE,      // a player is waiting, but a decision not prose
+        BACKGROUND  // identities, summaries, planning; nobody is waiting
+    }
+
+    private final String staticPrefix;
+    private final String volatileContext;
+    private final String userPrompt;
+    private final RequestClass requestClass;
+    private final boolean jsonOutput;
+
+    public LLMPrompt(String staticPrefix, String volatileContext, String userPrompt) {
+        this(staticPrefix, volatileContext, userPrompt, RequestClass.BACKGROUND);
+    }
+
+    public LLMPrompt(String staticPrefix, String volatileContext, String userPrompt, RequestClass requestClass) {
+        this(staticPrefix, volatileContext, userPrompt, requestClass, false);
+    }
+
+    private LLMPrompt(String staticPrefix, String volatileContext, String userPrompt, RequestClass requestClass,
+                      boolean jsonOutput) {
+        this.staticPrefix = staticPrefix != null ? staticPrefix : "";
+        this.volatileContext = volatileContext != null ? volatileContext : "";
+        this.userPrompt = userPrompt != null ? userPrompt : "";
+        this.requestClass = requestClass;
+        this.jsonOutput = jsonOutput;
+    }
+
+    /**
+     * The same prompt, asking the provider for a JSON reply through its native
+     * structured-output switch where it has one. The prompt text itself must
+     * still describe the JSON shape.
+     */
+    public LLMPrompt withJsonOutput() {
+        return new LLMPrompt(staticPrefix, volatileContext, userPrompt, requestClass, true);
+    }
+
+    public String getStaticPrefix() { return staticPrefix; }
+    public String getVolatileContext() { return volatileContext; }
+    public String getUserPrompt() { return userPrompt; }
+    public RequestClass getRequestClass() { return requestClass; }
+    public boolean isJsonOutput() { return jsonOutput; }
+    public boolean hasVolatileContext() { return !volatileContext.isEmpty(); }
+
+    /** Prefix and volatile context joined, for providers with a single system field. */
+    public String getCombinedSystemPrompt() {
+        return hasVolatileContext() ? staticPrefix + "\n\n" + volatileContext : staticPrefix;
+    }
+
+    /**
+     * Stable key for the prefix, used to route repeat requests to the same
+     * provider-side cache (OpenAI {@code prompt_cache_key}).
+     */
+    public String getCacheKey() {
+        return "villageragent-" + Integer.toHexString(staticPrefix.hashCode());
+    }
+
+    public int estimateTokens() {
+        return TokenEstimator.estimate(staticPrefix) + TokenEstimator.estimate(volatileContext)
+                + TokenEstimator.estimate(userPrompt);
+    }
+}
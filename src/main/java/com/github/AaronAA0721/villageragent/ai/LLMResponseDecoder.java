@@ -0,0 +1,100 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pulls selected fields out of a provider's JSON reply while it streams in.
+ *
+ * Paths are dot-separated object keys and array indices, e.g.
+ * {@code choices.0.message.content}. Subtrees that no requested path runs
+ * through are skipped token by token, so the body is never buffered as a
+ * string or built into a tree.
+ */
+public class LLMResponseDecoder {
+
+    /**
+     * Read the requested primitive fields from a JSON body.
+     * @return path to value (numbers as their text); missing paths are absent
+     */
+    public static Map<String, String> decode(InputStream in, String... paths) throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try (JsonReader json = new JsonReader(reader)) {
+            json.setLenient(true);
+            return decode(json, paths);
+        }
+    }
+
+    public static Map<String, String> decode(JsonReader json, String... paths) throws IOException {
+        Set<String> wanted = new HashSet<>(Arrays.asList(paths));
+        Set<String> prefixes = new HashSet<>();
+        for (String path : paths) {
+            for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+                prefixes.add(path.substring(0, dot));
+            }
+        }
+
+        Map<String, String> values = new HashMap<>();
+        walk(json, "", wanted, prefixes, values);
+        return values;
+    }
+
+    private static void walk(JsonReader json, String path, Set<String> wanted, Set<String> prefixes,
+                             Map<String, String> values) throws IOException {
+        JsonToken token = json.peek();
+        boolean root = path.isEmpty();
+        if (!root && !prefixes.contains(path)) {
+            if (wanted.contains(path) && token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY) {
+                if (token == JsonToken.NULL) {
+                    json.nextNull();
+                } else if (token == JsonToken.BOOLEAN) {
+                    values.put(path, String.valueOf(json.nextBoolean()));
+                } else {
+                    values.put(path, json.nextString());
+                }
+            } else {
+                json.skipValue();
+            }
+            return;
+        }
+
+        String base = root ? "" : path + ".";
+        if (token == JsonToken.BEGIN_OBJECT) {
+            json.beginObject();
+            while (json.hasNext()) {
+                walk(json, base + json.nextName(), wanted, prefixes, values);
+            }
+            json.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            for (int i = 0; json.hasNext(); i++) {
+                walk(json, base + i, wanted, prefixes, values);
+            }
+            json.endArray();
+        } else {
+            json.skipValue();
+        }
+    }
+
+    /** Integer value of a decoded field, or 0 when absent or not a number. */
+    public static int getInt(Map<String, String> values, String path) {
+        String value = values.get(path);
+        if (value == null) return 0;
+        try {
+            return (int) Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses which configured {@link LLMEndpoint} serves each request.
+ *
+ * Endpoints come from {@code llm_providers} (or the single global provider
+ * when that list is empty) and can be restricted per request class. With the
+ * "fastest" strategy healthy endpoints are ranked by measured EWMA latency,
+ * penalised by recent failures; "ordered" keeps the configured order and only
+ * moves on when an endpoint's circuit is open. Endpoints a request already
+ * tried are ranked last, so a retry fails over to the next one.
+ */
+public class LLMRouter {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Share of non-chat requests sent to a random endpoint to keep its latency current. */
+    private static final double EXPLORE_RATE = 0.05;
+
+    private static String cachedSignature;
+    private static List<LLMEndpoint> cachedEndpoints = Collections.emptyList();
+
+    /**
+     * All configured endpoints, parsed from {@code llm_providers}. Entries are
+     * {@code name|type|model|url|apiKey}; blank fields fall back to the global
+     * LLM settings.
+     */
+    public static synchronized List<LLMEndpoint> endpoints() {
+        List<? extends String> entries = ModConfig.LLM_PROVIDERS.get();
+        String signature = entries + "|" + ModConfig.LLM_API_TYPE.get() + "|" + ModConfig.LLM_MODEL.get()
+                + "|" + ModConfig.LLM_API_URL.get() + "|" + ModConfig.LLM_API_KEY.get();
+        if (signature.equals(cachedSignature)) {
+            return cachedEndpoints;
+        }
+
+        List<LLMEndpoint> endpoints = new ArrayList<>();
+        for (String entry : entries) {
+            String[] fields = entry.split("\\|", -1);
+            String name = field(fields, 0, "");
+            if (name.isEmpty()) {
+                LOGGER.warn("Ignoring LLM provider entry without a name: " + entry);
+                continue;
+            }
+            endpoints.add(new LLMEndpoint(name,
+                    field(fields, 1, ModConfig.LLM_API_TYPE.get()),
+                    field(fields, 2, ModConfig.LLM_MODEL.get()),
+                    field(fields, 3, ModConfig.LLM_API_URL.get()),
+                    field(fields, 4, ModConfig.LLM_API_KEY.get())));
+        }
+        if (endpoints.isEmpty()) {
+            String type = ModConfig.LLM_API_TYPE.get();
+            endpoints.add(new LLMEndpoint(type.toLowerCase(), type, ModConfig.LLM_MODEL.get(),
+                    ModConfig.LLM_API_URL.get(), ModConfig.LLM_API_KEY.get()));
+        }
+
+        cachedSignature = signature;
+        cachedEndpoints = Collections.unmodifiableList(endpoints);
+        return cachedEndpoints;
+    }
+
+    private static String field(String[] fields, int index, String fallback) {
+        String value = index < fields.length ? fields[index].trim() : "";
+        return value.isEmpty() ? fallback : value;
+    }
+
+    /**
+     * Endpoints allowed for a request class, in configured order. An empty
+     * route list means every endpoint.
+     */
+    public static List<LLMEndpoint> route(LLMPrompt.RequestClass requestClass) {
+        List<? extends String> names;
+        switch (requestClass) {
+            case CHAT:  names = ModConfig.LLM_ROUTE_CHAT.get(); break;
+            case TRADE: names = ModConfig.LLM_ROUTE_TRADE.get(); break;
+            default:    names = ModConfig.LLM_ROUTE_BACKGROUND.get(); break;
+        }
+
+        List<LLMEndpoint> candidates = new ArrayList<>();
+        for (LLMEndpoint endpoint : endpoints()) {
+            if (endpoint.isConfigured() && (names.isEmpty() || names.contains(endpoint.getName()))) {
+                candidates.add(endpoint);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Candidates ranked best first. Endpoints in {@code avoid} go last but stay
+     * eligible, so a single-provider setup still retries against itself.
+     */
+    static List<LLMEndpoint> rank(LLMPrompt.RequestClass requestClass, Set<String> avoid) {
+        List<LLMEndpoint> candidates = route(requestClass);
+        List<LLMEndpoint> ranked = new ArrayList<>(candidates);
+        Comparator<LLMEndpoint> order = Comparator.comparing(endpoint -> avoid.contains(endpoint.getName()));
+        if ("fastest".equalsIgnoreCase(ModConfig.LLM_ROUTING_STRATEGY.get())) {
+            order = order.thenComparingDouble(LLMRouter::score);
+        }
+        ranked.sort(order.thenComparingInt(candidates::indexOf));
+
+        if (requestClass != LLMPrompt.RequestClass.CHAT && avoid.isEmpty() && ranked.size() > 1
+                && ThreadLocalRandom.current().nextDouble() < EXPLORE_RATE) {
+            Collections.swap(ranked, 0, ThreadLocalRandom.current().nextInt(ranked.size()));
+        }
+        return ranked;
+    }
+
+    /**
+     * Expected latency of an endpoint. Unmeasured endpoints score 0 so they
+     * get measured; recent consecutive failures scale the score up.
+     */
+    private static double score(LLMEndpoint endpoint) {
+        ProviderHealth health = endpoint.getHealth();
+        if (health.getSampleCount() == 0) return 0;
+        return health.getEwmaMs() * (1 + health.getConsecutiveFailures());
+    }
+
+    /**
+     * Pick the best endpoint whose circuit admits a request, or null when all
+     * of them are open. Admission is reserved, so the caller must send.
+     */
+    public static LLMEndpoint select(LLMPrompt.RequestClass requestClass, Set<String> avoid) {
+        for (LLMEndpoint endpoint : rank(requestClass, avoid)) {
+            if (endpoint.getHealth().allowRequest()) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * How long to wait for a chat reply before hedging with a second request,
+     * or -1 when hedging is off or the likely endpoint has no latency history.
+     */
+    public static long hedgeDelayMs(LLMPrompt.RequestClass requestClass) {
+        if (requestClass != LLMPrompt.RequestClass.CHAT || !ModConfig.LLM_HEDGE_CHAT.get()) return -1;
+        for (LLMEndpoint endpoint : rank(requestClass, Collections.emptySet())) {
+            ProviderHealth health = endpoint.getHealth();
+            if (health.getState() == ProviderHealth.CircuitState.OPEN) continue;
+            if (!health.hasLatencyEstimate()) return -1;
+            return Math.max(ModConfig.LLM_HEDGE_MIN_DELAY_MS.get(), health.getPercentileMs(95));
+        }
+        return -1;
+    }
+}
@@ -1,69 +1,300 @@
 package com.github.AaronAA0721.villageragent.ai;
 
 import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for communicating with LLM APIs
  */
 public class LLMService {
     private static final Logger LOGGER = LogManager.getLogger();
-    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private static final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "VillagerAgent-LLM-Retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long RETRY_BASE_BACKOFF_MS = 500;
     
     public static CompletableFuture<String> queryLLM(String systemPrompt, String userPrompt) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String apiType = ModConfig.LLM_API_TYPE.get();
-
-                if ("openai".equalsIgnoreCase(apiType)) {
-                    return queryOpenAI(systemPrompt, userPrompt);
-                } else if ("anthropic".equalsIgnoreCase(apiType)) {
-                    return queryAnthropic(systemPrompt, userPrompt);
-                } else if ("ollama".equalsIgnoreCase(apiType)) {
-                    return queryOllama(systemPrompt, userPrompt);
-                } else if ("gemini".equalsIgnoreCase(apiType)) {
-                    return queryGemini(systemPrompt, userPrompt);
-                } else {
-                    LOGGER.warn("Unknown LLM API type: " + apiType);
-                    return "I cannot respond right now.";
+        return queryLLM(new LLMPrompt(systemPrompt, "", userPrompt));
+    }
+
+    public static CompletableFuture<String> queryLLM(LLMPrompt prompt) {
+        return queryLLMStrict(prompt).exceptionally(LLMService::fallbackReply);
+    }
+
+    /**
+     * Like {@link #queryLLM} but completes exceptionally instead of substituting
+     * an in-character fallback line. Background work (summaries, identities)
+     * uses this so error text never ends up stored as real content.
+     */
+    public static CompletableFuture<String> queryLLMStrict(String systemPrompt, String userPrompt) {
+        return queryLLMStrict(new LLMPrompt(systemPrompt, "", userPrompt));
+    }
+
+    public static CompletableFuture<String> queryLLMStrict(LLMPrompt prompt) {
+        recordPromptTokens(prompt);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Set<String> tried = ConcurrentHashMap.newKeySet();
+        AtomicInteger openLegs = new AtomicInteger(1);
+        attempt(prompt, 0, tried, leg(result, openLegs, false));
+
+        long hedgeDelayMs = LLMRouter.hedgeDelayMs(prompt.getRequestClass());
+        if (hedgeDelayMs >= 0) {
+            RETRY_SCHEDULER.schedule(() -> hedge(prompt, tried, result, openLegs), hedgeDelayMs, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * A future for one leg of a possibly hedged request: the first leg to
+     * succeed completes {@code result}; it fails only once every leg has.
+     */
+    private static CompletableFuture<String> leg(CompletableFuture<String> result, AtomicInteger openLegs, boolean hedged) {
+        CompletableFuture<String> leg = new CompletableFuture<>();
+        leg.whenComplete((response, error) -> {
+            if (error == null) {
+                if (result.complete(response) && hedged) {
+                    MetricsRegistry.increment("llm_hedge_wins_total");
                 }
-            } catch (Exception e) {
-                LOGGER.error("Error querying LLM: ", e);
-                return "I'm having trouble thinking right now.";
+            } else if (openLegs.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
             }
-        }, executor);
+        });
+        return leg;
     }
-    
-    private static String queryOpenAI(String systemPrompt, String userPrompt) throws Exception {
-        String apiKey = ModConfig.LLM_API_KEY.get();
-        String model = ModConfig.LLM_MODEL.get();
-        String apiUrl = ModConfig.LLM_API_URL.get();
+
+    /**
+     * Fire a second request for a reply that is slower than the endpoint's
+     * p95, preferring an endpoint the first leg has not used. The hedge gets
+     * no retries of its own; the first leg keeps its.
+     */
+    private static void hedge(LLMPrompt prompt, Set<String> tried, CompletableFuture<String> result, AtomicInteger openLegs) {
+        if (result.isDone()) return;
+        openLegs.incrementAndGet();
+        MetricsRegistry.increment("llm_hedges_total");
+        Set<String> hedgeTried = ConcurrentHashMap.newKeySet();
+        hedgeTried.addAll(tried);
+        attempt(prompt, ModConfig.LLM_MAX_RETRIES.get(), hedgeTried, leg(result, openLegs, true));
+    }
+
+    /**
+     * Run one attempt on the executor. Transient failures are retried with
+     * jittered exponential backoff (or the provider's Retry-After) on the
+     * retry scheduler, so no executor thread sleeps while waiting; the retry
+     * prefers an endpoint this request has not tried yet.
+     */
+    private static void attempt(LLMPrompt prompt, int attemptNumber, Set<String> tried, CompletableFuture<String> result) {
+        CompletableFuture.supplyAsync(() -> callProvider(prompt, tried), executor).whenComplete((response, error) -> {
+            if (error == null) {
+                result.complete(response);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            long delayMs = retryDelayMs(cause, attemptNumber);
+            if (delayMs < 0 || result.isDone()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            MetricsRegistry.increment(MetricsRegistry.name("llm_retries_total",
+                    "class", prompt.getRequestClass().name().toLowerCase()));
+            LOGGER.debug("Retrying LLM request in " + delayMs + "ms (attempt " + (attemptNumber + 2) + "): " + cause.getMessage());
+            RETRY_SCHEDULER.schedule(() -> attempt(prompt, attemptNumber + 1, tried, result), delayMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Send to the endpoint {@link LLMRouter} picks for this request class,
+     * recording latency or failure in its {@link ProviderHealth}.
+     */
+    private static String callProvider(LLMPrompt prompt, Set<String> tried) {
+        LLMEndpoint endpoint = LLMRouter.select(prompt.getRequestClass(), tried);
+        if (endpoint == null) {
+            MetricsRegistry.increment("llm_circuit_rejections_total");
+            throw new CompletionException(new LLMException("No LLM provider available (all circuits open)",
+                    "I'm having trouble thinking right now."));
+        }
+        tried.add(endpoint.getName());
+
+        String apiType = endpoint.getType();
+        ProviderHealth health = endpoint.getHealth();
+        int readTimeoutMs = health.getReadTimeoutMs();
+        MetricsRegistry.increment(MetricsRegistry.name("llm_routed_total", "provider", endpoint.getName()));
+
+        long start = System.nanoTime();
+        String status = "error";
+        try {
+            String response;
+            if ("openai".equals(apiType)) {
+                response = queryOpenAI(endpoint, prompt, readTimeoutMs);
+            } else if ("anthropic".equals(apiType)) {
+                response = queryAnthropic(endpoint, prompt, readTimeoutMs);
+            } else if ("ollama".equals(apiType)) {
+                response = queryOllama(endpoint, prompt, readTimeoutMs);
+            } else if ("gemini".equals(apiType)) {
+                response = queryGemini(endpoint, prompt, readTimeoutMs);
+            } else if ("stub".equals(apiType)) {
+                response = StubLLMProvider.query(prompt, readTimeoutMs);
+            } else {
+                LOGGER.warn("Unknown LLM API type: " + apiType);
+                health.recordRejected();
+                throw new LLMException("Unknown LLM API type: " + apiType, "I cannot respond right now.");
+            }
+            health.recordSuccess((System.nanoTime() - start) / 1_000_000L);
+            status = "ok";
+            MetricsRegistry.add("llm_completion_tokens_estimated_total", TokenEstimator.estimate(response));
+            return response;
+        } catch (LLMException e) {
+            if (e.isTransient()) {
+                health.recordFailure();
+                status = e.getRetryAfterMs() >= 0 ? "rate_limited" : "transient";
+            } else {
+                health.recordRejected();
+                status = "rejected";
+            }
+            throw new CompletionException(e);
+        } catch (IOException e) {
+            // Timeouts and connection failures
+            health.recordFailure();
+            status = e instanceof SocketTimeoutException ? "timeout" : "io_error";
+            LOGGER.warn("LLM request to " + endpoint + " failed: " + e);
+            throw new CompletionException(e);
+        } catch (Exception e) {
+            health.recordRejected();
+            LOGGER.error("Error querying LLM: ", e);
+            throw new CompletionException(e);
+        } finally {
+            MetricsRegistry.increment(MetricsRegistry.name("llm_calls_total",
+                    "provider", endpoint.getName(), "status", status));
+            MetricsRegistry.recordSince(MetricsRegistry.name("llm_call_seconds", "provider", endpoint.getName()), start);
+        }
+    }
+
+    /** Requests waiting for an executor thread. */
+    public static int getQueuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    /** Requests currently being sent or awaiting a reply. */
+    public static int getActiveRequests() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * How long to wait before retrying after {@code error}, or -1 to give up.
+     * Uses "full jitter" exponential backoff; a Retry-After longer than the
+     * backoff cap is not worth waiting for in an interactive game.
+     */
+    private static long retryDelayMs(Throwable error, int attemptNumber) {
+        if (attemptNumber >= ModConfig.LLM_MAX_RETRIES.get()) return -1;
+
+        long capMs = ModConfig.LLM_RETRY_MAX_BACKOFF_MS.get();
+        if (error instanceof LLMException) {
+            LLMException llmError = (LLMException) error;
+            if (!llmError.isTransient()) return -1;
+            if (llmError.getRetryAfterMs() >= 0) {
+                return llmError.getRetryAfterMs() <= capMs ? llmError.getRetryAfterMs() : -1;
+            }
+        } else if (!(error instanceof IOException)) {
+            return -1;
+        }
+
+        long ceiling = Math.min(capMs, RETRY_BASE_BACKOFF_MS << attemptNumber);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Parse a Retry-After header (delta-seconds or HTTP date) into milliseconds, or -1.
+     */
+    static long parseRetryAfterMs(String header) {
+        if (header == null || header.trim().isEmpty()) return -1;
+        String value = header.trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value) * 1000));
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds, try HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Whether any configured endpoint can be called at all: remote APIs need a
+     * key, the local Ollama server and the stub do not.
+     */
+    public static boolean isConfigured() {
+        for (LLMEndpoint endpoint : LLMRouter.endpoints()) {
+            if (endpoint.isConfigured()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Map a failed query to the line the villager says instead.
+     */
+    static String fallbackReply(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof LLMException) {
+            return ((LLMException) cause).getFallbackReply();
+        }
+        return "I'm having trouble thinking right now.";
+    }
+
+    /**
+     * Report the locally estimated prompt size of every outgoing request.
+     */
+    private static void recordPromptTokens(LLMPrompt prompt) {
+        int tokens = prompt.estimateTokens();
+        MetricsRegistry.increment("llm_requests_total");
+        MetricsRegistry.add("llm_prompt_tokens_estimated_total", tokens);
+        LOGGER.debug("LLM request prompt size: ~" + tokens + " tokens");
+    }
+
+    private static String queryOpenAI(LLMEndpoint endpoint, LLMPrompt prompt, int readTimeoutMs) throws Exception {
+        String apiKey = endpoint.getApiKey();
+        String model = endpoint.getModel();
+        String apiUrl = endpoint.getUrl();
 
         LOGGER.debug("=== OpenAI API Request ===");
         LOGGER.debug("URL: " + apiUrl);
         LOGGER.debug("Model: " + model);
         LOGGER.debug("API Key: " + (apiKey.isEmpty() ? "NOT SET" : apiKey.substring(0, Math.min(8, apiKey.length())) + "..."));
-        LOGGER.debug("System Prompt: " + systemPrompt);
-        LOGGER.debug("User Prompt: " + userPrompt);
+        LOGGER.debug("System Prompt: " + prompt.getCombinedSystemPrompt());
+        LOGGER.debug("User Prompt: " + prompt.getUserPrompt());
 
         if (apiKey.isEmpty()) {
             LOGGER.warn("OpenAI API key is empty!");
-            return "I need an API key to think.";
+            throw new LLMException("API key not configured", "I need an API key to think.");
         }
 
         URL url = new URL(apiUrl);
@@ -72,25 +303,42 @@ public class LLMService {
         conn.setRequestProperty("Content-Type", "application/json");
         conn.setRequestProperty("Authorization", "Bearer " + apiKey);
         conn.setDoOutput(true);
-        conn.setConnectTimeout(30000); // 30 second timeout
-        conn.setReadTimeout(60000); // 60 second read timeout
+        conn.setConnectTimeout(ModConfig.LLM_CONNECT_TIMEOUT_MS.get());
+        conn.setReadTimeout(readTimeoutMs);
 
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("model", model);
         requestBody.addProperty("max_tokens", ModConfig.LLM_MAX_TOKENS.get());
 
+        // OpenAI caches the longest previously seen prefix automatically, so the
+        // static persona goes first as its own message and the cache key keeps
+        // one villager's requests on the same cache shard.
+        requestBody.addProperty("prompt_cache_key", prompt.getCacheKey());
+
         JsonArray messages = new JsonArray();
         JsonObject systemMessage = new JsonObject();
         systemMessage.addProperty("role", "system");
-        systemMessage.addProperty("content", systemPrompt);
+        systemMessage.addProperty("content", prompt.getStaticPrefix());
         messages.add(systemMessage);
 
+        if (prompt.hasVolatileContext()) {
+            JsonObject contextMessage = new JsonObject();
+            contextMessage.addProperty("role", "system");
+            contextMessage.addProperty("content", prompt.getVolatileContext());
+            messages.add(contextMessage);
+        }
+
         JsonObject userMessage = new JsonObject();
         userMessage.addProperty("role", "user");
-        userMessage.addProperty("content", userPrompt);
+        userMessage.addProperty("content", prompt.getUserPrompt());
         messages.add(userMessage);
 
         requestBody.add("messages", messages);
+        if (prompt.isJsonOutput()) {
+            JsonObject responseFormat = new JsonObject();
+            responseFormat.addProperty("type", "json_object");
+            requestBody.add("response_format", responseFormat);
+        }
 
         LOGGER.debug("Request Body: " + requestBody.toString());
 
@@ -106,22 +354,14 @@ public class LLMService {
         LOGGER.debug("Response Headers: " + conn.getHeaderFields());
 
         if (responseCode == 200) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+            Map<String, String> fields;
+            try (InputStream in = conn.getInputStream()) {
+                fields = LLMResponseDecoder.decode(in, "choices.0.message.content",
+                        "usage.prompt_tokens", "usage.prompt_tokens_details.cached_tokens");
             }
-
-            LOGGER.debug("Raw Response Body: " + response.toString());
-
-            JsonParser parser = new JsonParser();
-            JsonElement element = parser.parse(response.toString());
-            JsonObject jsonResponse = element.getAsJsonObject();
-            String content = jsonResponse.getAsJsonArray("choices")
-                    .get(0).getAsJsonObject()
-                    .getAsJsonObject("message")
-                    .get("content").getAsString();
+            String content = requireContent(fields, "choices.0.message.content", "OpenAI");
+            recordUsage(endpoint.getName(), LLMResponseDecoder.getInt(fields, "usage.prompt_tokens"),
+                    LLMResponseDecoder.getInt(fields, "usage.prompt_tokens_details.cached_tokens"));
             LOGGER.debug("Parsed Content: " + content);
             LOGGER.info("OpenAI response received successfully");
             return content;
@@ -137,25 +377,27 @@ public class LLMService {
             }
             LOGGER.debug("Error Response Body: " + errorResponse.toString());
             LOGGER.error("OpenAI API error " + responseCode + ": " + errorResponse.toString());
-            return "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")";
+            throw new LLMException("OpenAI API error " + responseCode, responseCode,
+                    "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")",
+                    parseRetryAfterMs(conn.getHeaderField("Retry-After")));
         }
     }
     
-    private static String queryAnthropic(String systemPrompt, String userPrompt) throws Exception {
-        String apiKey = ModConfig.LLM_API_KEY.get();
-        String model = ModConfig.LLM_MODEL.get();
-        String apiUrl = ModConfig.LLM_API_URL.get();
+    private static String queryAnthropic(LLMEndpoint endpoint, LLMPrompt prompt, int readTimeoutMs) throws Exception {
+        String apiKey = endpoint.getApiKey();
+        String model = endpoint.getModel();
+        String apiUrl = endpoint.getUrl();
 
         LOGGER.debug("=== Anthropic API Request ===");
         LOGGER.debug("URL: " + apiUrl);
         LOGGER.debug("Model: " + model);
         LOGGER.debug("API Key: " + (apiKey.isEmpty() ? "NOT SET" : apiKey.substring(0, Math.min(8, apiKey.length())) + "..."));
-        LOGGER.debug("System Prompt: " + systemPrompt);
-        LOGGER.debug("User Prompt: " + userPrompt);
+        LOGGER.debug("System Prompt: " + prompt.getCombinedSystemPrompt());
+        LOGGER.debug("User Prompt: " + prompt.getUserPrompt());
 
         if (apiKey.isEmpty()) {
             LOGGER.warn("Anthropic API key is empty!");
-            return "I need an API key to think.";
+            throw new LLMException("API key not configured", "I need an API key to think.");
         }
 
         URL url = new URL(apiUrl);
@@ -165,18 +407,35 @@ public class LLMService {
         conn.setRequestProperty("x-api-key", apiKey);
         conn.setRequestProperty("anthropic-version", "2023-06-01");
         conn.setDoOutput(true);
-        conn.setConnectTimeout(30000);
-        conn.setReadTimeout(60000);
+        conn.setConnectTimeout(ModConfig.LLM_CONNECT_TIMEOUT_MS.get());
+        conn.setReadTimeout(readTimeoutMs);
 
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("model", model);
         requestBody.addProperty("max_tokens", ModConfig.LLM_MAX_TOKENS.get());
-        requestBody.addProperty("system", systemPrompt);
+
+        // System as content blocks: the static persona carries a cache breakpoint,
+        // the volatile context follows it uncached.
+        JsonArray system = new JsonArray();
+        JsonObject prefixBlock = new JsonObject();
+        prefixBlock.addProperty("type", "text");
+        prefixBlock.addProperty("text", prompt.getStaticPrefix());
+        JsonObject cacheControl = new JsonObject();
+        cacheControl.addProperty("type", "ephemeral");
+        prefixBlock.add("cache_control", cacheControl);
+        system.add(prefixBlock);
+        if (prompt.hasVolatileContext()) {
+            JsonObject contextBlock = new JsonObject();
+            contextBlock.addProperty("type", "text");
+            contextBlock.addProperty("text", prompt.getVolatileContext());
+            system.add(contextBlock);
+        }
+        requestBody.add("system", system);
 
         JsonArray messages = new JsonArray();
         JsonObject userMessage = new JsonObject();
         userMessage.addProperty("role", "user");
-        userMessage.addProperty("content", userPrompt);
+        userMessage.addProperty("content", prompt.getUserPrompt());
         messages.add(userMessage);
 
         requestBody.add("messages", messages);
@@ -195,21 +454,16 @@ public class LLMService {
         LOGGER.debug("Response Headers: " + conn.getHeaderFields());
 
         if (responseCode == 200) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+            Map<String, String> fields;
+            try (InputStream in = conn.getInputStream()) {
+                fields = LLMResponseDecoder.decode(in, "content.0.text", "usage.input_tokens",
+                        "usage.cache_read_input_tokens", "usage.cache_creation_input_tokens");
             }
-
-            LOGGER.debug("Raw Response Body: " + response.toString());
-
-            JsonParser parser = new JsonParser();
-            JsonElement element = parser.parse(response.toString());
-            JsonObject jsonResponse = element.getAsJsonObject();
-            String content = jsonResponse.getAsJsonArray("content")
-                    .get(0).getAsJsonObject()
-                    .get("text").getAsString();
+            String content = requireContent(fields, "content.0.text", "Anthropic");
+            int cacheRead = LLMResponseDecoder.getInt(fields, "usage.cache_read_input_tokens");
+            int total = LLMResponseDecoder.getInt(fields, "usage.input_tokens") + cacheRead
+                    + LLMResponseDecoder.getInt(fields, "usage.cache_creation_input_tokens");
+            recordUsage(endpoint.getName(), total, cacheRead);
             LOGGER.debug("Parsed Content: " + content);
             LOGGER.info("Anthropic response received successfully");
             return content;
@@ -224,13 +478,15 @@ public class LLMService {
             }
             LOGGER.debug("Error Response Body: " + errorResponse.toString());
             LOGGER.error("Anthropic API error " + responseCode + ": " + errorResponse.toString());
-            return "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")";
+            throw new LLMException("Anthropic API error " + responseCode, responseCode,
+                    "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")",
+                    parseRetryAfterMs(conn.getHeaderField("Retry-After")));
         }
     }
 
-    private static String queryOllama(String systemPrompt, String userPrompt) throws Exception {
-        String model = ModConfig.LLM_MODEL.get();
-        String apiUrl = ModConfig.LLM_API_URL.get();
+    private static String queryOllama(LLMEndpoint endpoint, LLMPrompt prompt, int readTimeoutMs) throws Exception {
+        String model = endpoint.getModel();
+        String apiUrl = endpoint.getUrl();
 
         // Default Ollama URL if not set
         if (apiUrl.isEmpty() || apiUrl.contains("openai.com") || apiUrl.contains("anthropic.com")) {
@@ -240,24 +496,29 @@ public class LLMService {
         LOGGER.debug("=== Ollama API Request ===");
         LOGGER.debug("URL: " + apiUrl);
         LOGGER.debug("Model: " + model);
-        LOGGER.debug("System Prompt: " + systemPrompt);
-        LOGGER.debug("User Prompt: " + userPrompt);
+        LOGGER.debug("System Prompt: " + prompt.getCombinedSystemPrompt());
+        LOGGER.debug("User Prompt: " + prompt.getUserPrompt());
 
         URL url = new URL(apiUrl);
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         conn.setRequestMethod("POST");
         conn.setRequestProperty("Content-Type", "application/json");
         conn.setDoOutput(true);
-        conn.setConnectTimeout(30000);
-        conn.setReadTimeout(120000); // Ollama can be slow, 2 min timeout
+        conn.setConnectTimeout(ModConfig.LLM_CONNECT_TIMEOUT_MS.get());
+        // Ollama can be slow on first load; the adaptive timeout learns its latency
+        conn.setReadTimeout(readTimeoutMs);
 
-        // Combine system and user prompts for Ollama
-        String combinedPrompt = systemPrompt + "\n\nUser: " + userPrompt + "\nAssistant:";
+        // Combine system and user prompts for Ollama. The static prefix leads so
+        // the loaded model can reuse its KV cache across a villager's requests.
+        String combinedPrompt = prompt.getCombinedSystemPrompt() + "\n\nUser: " + prompt.getUserPrompt() + "\nAssistant:";
 
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("model", model);
         requestBody.addProperty("prompt", combinedPrompt);
         requestBody.addProperty("stream", false);
+        if (prompt.isJsonOutput()) {
+            requestBody.addProperty("format", "json");
+        }
 
         LOGGER.debug("Request Body: " + requestBody.toString());
 
@@ -273,19 +534,12 @@ public class LLMService {
         LOGGER.debug("Response Headers: " + conn.getHeaderFields());
 
         if (responseCode == 200) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+            Map<String, String> fields;
+            try (InputStream in = conn.getInputStream()) {
+                fields = LLMResponseDecoder.decode(in, "response", "prompt_eval_count");
             }
-
-            LOGGER.debug("Raw Response Body: " + response.toString());
-
-            JsonParser parser = new JsonParser();
-            JsonElement element = parser.parse(response.toString());
-            JsonObject jsonResponse = element.getAsJsonObject();
-            String content = jsonResponse.get("response").getAsString();
+            String content = requireContent(fields, "response", "Ollama");
+            recordUsage(endpoint.getName(), LLMResponseDecoder.getInt(fields, "prompt_eval_count"), 0);
             LOGGER.debug("Parsed Content: " + content);
             LOGGER.info("Ollama response received successfully");
             return content;
@@ -300,14 +554,16 @@ public class LLMService {
             }
             LOGGER.debug("Error Response Body: " + errorResponse.toString());
             LOGGER.error("Ollama API error " + responseCode + ": " + errorResponse.toString());
-            return "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")";
+            throw new LLMException("Ollama API error " + responseCode, responseCode,
+                    "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")",
+                    parseRetryAfterMs(conn.getHeaderField("Retry-After")));
         }
     }
 
-    private static String queryGemini(String systemPrompt, String userPrompt) throws Exception {
-        String apiKey = ModConfig.LLM_API_KEY.get();
-        String model = ModConfig.LLM_MODEL.get();
-        String apiUrl = ModConfig.LLM_API_URL.get();
+    private static String queryGemini(LLMEndpoint endpoint, LLMPrompt prompt, int readTimeoutMs) throws Exception {
+        String apiKey = endpoint.getApiKey();
+        String model = endpoint.getModel();
+        String apiUrl = endpoint.getUrl();
 
         // Default Gemini URL if not set or using other provider URLs
         if (apiUrl.isEmpty() || apiUrl.contains("openai.com") || apiUrl.contains("anthropic.com")) {
@@ -318,12 +574,12 @@ public class LLMService {
         LOGGER.debug("URL: " + apiUrl);
         LOGGER.debug("Model: " + model);
         LOGGER.debug("API Key: " + (apiKey.isEmpty() ? "NOT SET" : apiKey.substring(0, Math.min(8, apiKey.length())) + "..."));
-        LOGGER.debug("System Prompt: " + systemPrompt);
-        LOGGER.debug("User Prompt: " + userPrompt);
+        LOGGER.debug("System Prompt: " + prompt.getCombinedSystemPrompt());
+        LOGGER.debug("User Prompt: " + prompt.getUserPrompt());
 
         if (apiKey.isEmpty()) {
             LOGGER.warn("Gemini API key is empty!");
-            return "I need an API key to think.";
+            throw new LLMException("API key not configured", "I need an API key to think.");
         }
 
         // Append API key to URL
@@ -333,8 +589,8 @@ public class LLMService {
         conn.setRequestMethod("POST");
         conn.setRequestProperty("Content-Type", "application/json");
         conn.setDoOutput(true);
-        conn.setConnectTimeout(30000);
-        conn.setReadTimeout(60000);
+        conn.setConnectTimeout(ModConfig.LLM_CONNECT_TIMEOUT_MS.get());
+        conn.setReadTimeout(readTimeoutMs);
 
         // Build Gemini request format
         JsonObject requestBody = new JsonObject();
@@ -343,8 +599,13 @@ public class LLMService {
         JsonObject systemInstruction = new JsonObject();
         JsonArray systemParts = new JsonArray();
         JsonObject systemTextPart = new JsonObject();
-        systemTextPart.addProperty("text", systemPrompt);
+        systemTextPart.addProperty("text", prompt.getStaticPrefix());
         systemParts.add(systemTextPart);
+        if (prompt.hasVolatileContext()) {
+            JsonObject contextPart = new JsonObject();
+            contextPart.addProperty("text", prompt.getVolatileContext());
+            systemParts.add(contextPart);
+        }
         systemInstruction.add("parts", systemParts);
         requestBody.add("system_instruction", systemInstruction);
 
@@ -354,7 +615,7 @@ public class LLMService {
         userContent.addProperty("role", "user");
         JsonArray userParts = new JsonArray();
         JsonObject userTextPart = new JsonObject();
-        userTextPart.addProperty("text", userPrompt);
+        userTextPart.addProperty("text", prompt.getUserPrompt());
         userParts.add(userTextPart);
         userContent.add("parts", userParts);
         contents.add(userContent);
@@ -364,6 +625,9 @@ public class LLMService {
         JsonObject generationConfig = new JsonObject();
         generationConfig.addProperty("maxOutputTokens", ModConfig.LLM_MAX_TOKENS.get());
         generationConfig.addProperty("temperature", ModConfig.LLM_TEMPERATURE.get());
+        if (prompt.isJsonOutput()) {
+            generationConfig.addProperty("responseMimeType", "application/json");
+        }
         requestBody.add("generationConfig", generationConfig);
 
         LOGGER.debug("Request Body: " + requestBody.toString());
@@ -379,26 +643,14 @@ public class LLMService {
         LOGGER.debug("Response Code: " + responseCode + " " + responseMessage);
 
         if (responseCode == 200) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+            Map<String, String> fields;
+            try (InputStream in = conn.getInputStream()) {
+                fields = LLMResponseDecoder.decode(in, "candidates.0.content.parts.0.text",
+                        "usageMetadata.promptTokenCount", "usageMetadata.cachedContentTokenCount");
             }
-
-            LOGGER.debug("Raw Response Body: " + response.toString());
-
-            JsonParser parser = new JsonParser();
-            JsonElement element = parser.parse(response.toString());
-            JsonObject jsonResponse = element.getAsJsonObject();
-
-            // Parse Gemini response format: candidates[0].content.parts[0].text
-            String content = jsonResponse.getAsJsonArray("candidates")
-                    .get(0).getAsJsonObject()
-                    .getAsJsonObject("content")
-                    .getAsJsonArray("parts")
-                    .get(0).getAsJsonObject()
-                    .get("text").getAsString();
+            String content = requireContent(fields, "candidates.0.content.parts.0.text", "Gemini");
+            recordUsage(endpoint.getName(), LLMResponseDecoder.getInt(fields, "usageMetadata.promptTokenCount"),
+                    LLMResponseDecoder.getInt(fields, "usageMetadata.cachedContentTokenCount"));
             LOGGER.debug("Parsed Content: " + content);
             LOGGER.info("Gemini response received successfully");
             return content;
@@ -413,8 +665,30 @@ public class LLMService {
             }
             LOGGER.debug("Error Response Body: " + errorResponse.toString());
             LOGGER.error("Gemini API error " + responseCode + ": " + errorResponse.toString());
-            return "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")";
+            throw new LLMException("Gemini API error " + responseCode, responseCode,
+                    "I'm having trouble connecting to my thoughts. (Error: " + responseCode + ")",
+                    parseRetryAfterMs(conn.getHeaderField("Retry-After")));
         }
     }
-}
 
+    /**
+     * Report provider-counted prompt tokens and how many of them were served
+     * from the provider's prefix cache.
+     */
+    private static void recordUsage(String provider, int promptTokens, int cachedTokens) {
+        MetricsRegistry.add(MetricsRegistry.name("llm_prompt_tokens_total", "provider", provider), promptTokens);
+        MetricsRegistry.add(MetricsRegistry.name("llm_cached_prompt_tokens_total", "provider", provider), cachedTokens);
+        if (cachedTokens > 0) {
+            MetricsRegistry.increment(MetricsRegistry.name("llm_cache_hits_total", "provider", provider));
+        }
+        LOGGER.debug(provider + " usage: " + promptTokens + " prompt tokens, " + cachedTokens + " cached");
+    }
+
+    private static String requireContent(Map<String, String> fields, String path, String provider) throws LLMException {
+        String content = fields.get(path);
+        if (content == null) {
+            throw new LLMException(provider + " reply had no " + path, "I'm having trouble thinking right now.");
+        }
+        return content;
+    }
+}
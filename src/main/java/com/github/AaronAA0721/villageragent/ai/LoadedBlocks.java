@@ -0,0 +1,93 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Block reads that never load a chunk.
+ *
+ * {@code World.getBlockState} loads a missing chunk on the spot, generating
+ * it if need be, so a villager near the edge of the loaded area could stall
+ * the server. Agent code reads the live world through here instead: only
+ * chunks that are already loaded are read, and anything in a chunk that is
+ * not reads as {@link #UNLOADED}, a barrier. That is solid, not walkable and
+ * not a crop, so scans and walk checks treat it as a wall. Every read that
+ * hit an unloaded chunk is counted in {@code agent_unloaded_reads_total}.
+ *
+ * {@code getChunkNow} only answers on the server thread. Off-thread code
+ * reads a {@link ChunkSectionSnapshot} or {@link PathRegionSnapshot}, which
+ * are captured here and follow the same rule.
+ */
+public final class LoadedBlocks {
+    static final BlockState UNLOADED = Blocks.BARRIER.defaultBlockState();
+
+    private static final LongAdder SKIPPED_READS = MetricsRegistry.counter("agent_unloaded_reads_total");
+
+    private LoadedBlocks() {}
+
+    /** The chunk holding {@code pos} if it is loaded, else null. Server thread only. */
+    static Chunk chunkAt(ServerWorld world, BlockPos pos) {
+        return world.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    static boolean isLoaded(ServerWorld world, BlockPos pos) {
+        return chunkAt(world, pos) != null;
+    }
+
+    static BlockState getBlockState(ServerWorld world, BlockPos pos) {
+        Chunk chunk = chunkAt(world, pos);
+        if (chunk == null) {
+            SKIPPED_READS.increment();
+            return UNLOADED;
+        }
+        return chunk.getBlockState(pos);
+    }
+
+    /** First free block above the surface of a loaded column, as {@code World.getHeight}; -1 if unloaded. */
+    static int getHeight(ServerWorld world, Heightmap.Type type, int x, int z) {
+        Chunk chunk = world.getChunkSource().getChunkNow(x >> 4, z >> 4);
+        if (chunk == null) {
+            SKIPPED_READS.increment();
+            return -1;
+        }
+        return chunk.getHeight(type, x & 15, z & 15) + 1;
+    }
+
+    /** Count reads that found their chunk unloaded, for readers that check it themselves. */
+    static void skipped(int reads) {
+        SKIPPED_READS.add(reads);
+    }
+
+    /** The world as seen through loaded chunks only. Server thread only. */
+    static IBlockReader view(ServerWorld world) {
+        return new IBlockReader() {
+            @Override
+            public BlockState getBlockState(BlockPos pos) {
+                return LoadedBlocks.getBlockState(world, pos);
+            }
+
+            @Override
+            public FluidState getFluidState(BlockPos pos) {
+                Chunk chunk = chunkAt(world, pos);
+                return chunk == null ? Fluids.EMPTY.defaultFluidState() : chunk.getFluidState(pos);
+            }
+
+            @Override
+            public TileEntity getBlockEntity(BlockPos pos) {
+                Chunk chunk = chunkAt(world, pos);
+                return chunk == null ? null : chunk.getBlockEntity(pos);
+            }
+        };
+    }
+}
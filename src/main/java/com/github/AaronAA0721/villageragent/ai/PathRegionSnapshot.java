@@ -0,0 +1,89 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.Region;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Copy of the block states in a box, shaped as the {@link Region} vanilla's
+ * {@code PathFinder} expects, so a path can be searched on a worker thread.
+ *
+ * Unlike {@link ChunkSectionSnapshot} the states are really copied: path
+ * searches run while the server keeps ticking. Everything outside the box
+ * reads as barrier, which keeps the search inside it. Collision checks are
+ * answered from the copy as well, and no block entities or entities are
+ * seen. Chunks that are not loaded read as {@link LoadedBlocks#UNLOADED},
+ * so paths go around them, and are never loaded.
+ */
+final class PathRegionSnapshot extends Region {
+    private static final BlockState OUTSIDE = Blocks.BARRIER.defaultBlockState();
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final BlockState[] states;
+
+    /** Copy the box from {@code min} to {@code max} inclusive. Server thread only. */
+    PathRegionSnapshot(ServerWorld world, BlockPos min, BlockPos max) {
+        super(world, min, max);
+        this.minX = min.getX();
+        this.minY = min.getY();
+        this.minZ = min.getZ();
+        this.sizeX = max.getX() - minX + 1;
+        this.sizeY = max.getY() - minY + 1;
+        this.sizeZ = max.getZ() - minZ + 1;
+        this.states = new BlockState[sizeX * sizeY * sizeZ];
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        int skipped = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                pos.set(minX + x, minY, minZ + z);
+                boolean loaded = LoadedBlocks.isLoaded(world, pos);
+                if (!loaded) skipped += sizeY;
+                for (int y = 0; y < sizeY; y++) {
+                    pos.setY(minY + y);
+                    states[(y * sizeZ + z) * sizeX + x] = loaded ? super.getBlockState(pos) : LoadedBlocks.UNLOADED;
+                }
+            }
+        }
+        if (skipped > 0) LoadedBlocks.skipped(skipped);
+    }
+
+    int getVolume() {
+        return states.length;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        int x = pos.getX() - minX;
+        int y = pos.getY() - minY;
+        int z = pos.getZ() - minZ;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) return OUTSIDE;
+        return states[(y * sizeZ + z) * sizeX + x];
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public TileEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    /** Block collisions read chunks directly; point them at the copy instead. */
+    @Override
+    public IBlockReader getChunkForCollisions(int chunkX, int chunkZ) {
+        return this;
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.entity.ai.attributes.Attributes;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.pathfinding.Path;
+import net.minecraft.pathfinding.PathFinder;
+import net.minecraft.pathfinding.WalkNodeProcessor;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds villager paths on worker threads, so A* never holds up the tick.
+ *
+ * A request copies the blocks around the villager and its targets into a
+ * {@link PathRegionSnapshot} and runs vanilla's {@code PathFinder} on it with
+ * the same node settings a villager's navigator uses. The result comes
+ * back through the agent's mailbox, so the callback runs on the server
+ * thread at the start of the next tick. If any block in the snapshot's box
+ * changes while the search runs, the result is thrown away and the search
+ * redone on a fresh copy; after {@link #MAX_ATTEMPTS} tries it is done
+ * synchronously instead. When async pathfinding is off, or the pool is
+ * saturated, requests are answered synchronously at once.
+ *
+ * The villager entity itself is only read for its size, position and
+ * pathfinding penalties.
+ */
+public class PathService {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Room around the villager and its targets for the path to go round obstacles. */
+    private static final int HORIZONTAL_MARGIN = 8;
+    private static final int VERTICAL_MARGIN = 4;
+    /** Boxes wider than this are searched synchronously; long trips should be split into legs. */
+    private static final int MAX_BOX_WIDTH = 96;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final String COMPUTE_SECONDS = "path_compute_seconds";
+
+    @FunctionalInterface
+    public interface Callback {
+        /** @param path the path found, or null if none; runs on the server thread */
+        void onPath(VillagerEntity villager, VillagerAgentData agent, Path path);
+    }
+
+    private static final class Job {
+        final VillagerEntity villager;
+        final VillagerAgentData agent;
+        final Set<BlockPos> targets;
+        final int accuracy;
+        final Callback callback;
+        BlockPos min;
+        BlockPos max;
+        volatile boolean stale;
+        int attempts;
+
+        Job(VillagerEntity villager, VillagerAgentData agent, Set<BlockPos> targets, int accuracy, Callback callback) {
+            this.villager = villager;
+            this.agent = agent;
+            this.targets = targets;
+            this.accuracy = accuracy;
+            this.callback = callback;
+        }
+
+        boolean covers(BlockPos pos) {
+            return pos.getX() >= min.getX() && pos.getX() <= max.getX()
+                    && pos.getY() >= min.getY() && pos.getY() <= max.getY()
+                    && pos.getZ() >= min.getZ() && pos.getZ() <= max.getZ();
+        }
+    }
+
+    private static final Set<Job> PENDING = ConcurrentHashMap.newKeySet();
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Find a path for {@code villager} to the nearest reachable of
+     * {@code targets}. Server thread only; {@code callback} always runs,
+     * either now or at the start of a later tick.
+     */
+    public static void request(VillagerEntity villager, VillagerAgentData agent, Collection<BlockPos> targets,
+                               int accuracy, Callback callback) {
+        Job job = new Job(villager, agent, new HashSet<>(targets), accuracy, callback);
+        if (!ModConfig.ASYNC_PATHFINDING.get() || targets.isEmpty() || !fitBox(job)) {
+            deliverSync(job);
+            return;
+        }
+        submit(job);
+    }
+
+    /** A block changed: searches whose snapshot covers it are now stale. Server thread only. */
+    public static void onBlockChanged(World world, BlockPos pos) {
+        if (PENDING.isEmpty()) return;
+        for (Job job : PENDING) {
+            if (!job.stale && job.villager.level == world && job.covers(pos)) {
+                job.stale = true;
+            }
+        }
+    }
+
+    public static int getPendingCount() {
+        return PENDING.size();
+    }
+
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        PENDING.clear();
+    }
+
+    private static void submit(Job job) {
+        long start = System.nanoTime();
+        PathRegionSnapshot region = new PathRegionSnapshot((ServerWorld) job.villager.level, job.min, job.max);
+        MetricsRegistry.recordSince("path_snapshot_seconds", start);
+        float followRange = (float) job.villager.getAttributeValue(Attributes.FOLLOW_RANGE);
+
+        job.stale = false;
+        PENDING.add(job);
+        try {
+            executor().execute(() -> {
+                Path path = null;
+                long computeStart = System.nanoTime();
+                try {
+                    path = compute(job, region, followRange);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Async path search failed for " + job.agent.getName(), e);
+                } finally {
+                    MetricsRegistry.recordSince(COMPUTE_SECONDS, computeStart);
+                }
+                Path result = path;
+                job.agent.post(agent -> deliver(job, result));
+            });
+            MetricsRegistry.increment(MetricsRegistry.name("path_requests_total", "mode", "async"));
+        } catch (RejectedExecutionException e) {
+            PENDING.remove(job);
+            deliverSync(job);
+        }
+    }
+
+    private static Path compute(Job job, PathRegionSnapshot region, float followRange) {
+        // Same node settings as the villager's own GroundPathNavigator
+        WalkNodeProcessor nodes = new WalkNodeProcessor();
+        nodes.setCanPassDoors(true);
+        nodes.setCanOpenDoors(true);
+        nodes.setCanFloat(true);
+        PathFinder finder = new PathFinder(nodes, (int) (followRange * 16.0F));
+        return finder.findPath(region, job.villager, job.targets, followRange, job.accuracy, 1.0F);
+    }
+
+    private static void deliver(Job job, Path path) {
+        PENDING.remove(job);
+        if (!job.villager.isAlive()) {
+            // No point searching again for a dead villager, but the caller may hold state until it hears back
+            job.callback.onPath(job.villager, job.agent, null);
+            return;
+        }
+        if (job.stale) {
+            MetricsRegistry.increment("path_stale_total");
+            if (++job.attempts < MAX_ATTEMPTS && fitBox(job)) {
+                submit(job);
+            } else {
+                deliverSync(job);
+            }
+            return;
+        }
+        job.callback.onPath(job.villager, job.agent, path);
+    }
+
+    private static void deliverSync(Job job) {
+        long start = System.nanoTime();
+        Path path = job.targets.isEmpty() ? null : job.villager.getNavigation().createPath(job.targets, job.accuracy);
+        MetricsRegistry.recordSince(COMPUTE_SECONDS, start);
+        MetricsRegistry.increment(MetricsRegistry.name("path_requests_total", "mode", "sync"));
+        job.callback.onPath(job.villager, job.agent, path);
+    }
+
+    /** Work out the snapshot box for the villager's current position; false if it is too big. */
+    private static boolean fitBox(Job job) {
+        BlockPos from = job.villager.blockPosition();
+        int minX = from.getX(), minY = from.getY(), minZ = from.getZ();
+        int maxX = minX, maxY = minY, maxZ = minZ;
+        for (BlockPos target : job.targets) {
+            minX = Math.min(minX, target.getX());
+            minY = Math.min(minY, target.getY());
+            minZ = Math.min(minZ, target.getZ());
+            maxX = Math.max(maxX, target.getX());
+            maxY = Math.max(maxY, target.getY());
+            maxZ = Math.max(maxZ, target.getZ());
+        }
+        if (maxX - minX > MAX_BOX_WIDTH || maxZ - minZ > MAX_BOX_WIDTH) return false;
+        job.min = new BlockPos(minX - HORIZONTAL_MARGIN, Math.max(0, minY - VERTICAL_MARGIN), minZ - HORIZONTAL_MARGIN);
+        job.max = new BlockPos(maxX + HORIZONTAL_MARGIN, Math.min(255, maxY + VERTICAL_MARGIN), maxZ + HORIZONTAL_MARGIN);
+        return true;
+    }
+
+    private static synchronized ThreadPoolExecutor executor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = ModConfig.PATHFINDING_THREADS.get();
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                        Thread thread = new Thread(r, "VillagerAgent-Path-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+
+import java.util.*;
+
+/**
+ * Assembles an LLM prompt from context sections against a token budget.
+ *
+ * The preamble and footer are always included. Sections are then filled
+ * in order of relevance (highest first) until the budget runs out; inside a
+ * section the highest-scoring lines win (by default the newest ones).
+ * Kept lines are written back in their original order and sections in the
+ * order they were added, so the prompt layout stays stable between turns.
+ */
+public class PromptBuilder {
+
+    private static class Section {
+        final String header;
+        final List<String> lines;
+        final double[] lineScores;   // null = recency (later lines score higher)
+        final double relevance;
+        final String emptyText;      // printed when the section has no lines at all
+
+        Section(String header, List<String> lines, double[] lineScores, double relevance, String emptyText) {
+            this.header = header;
+            this.lines = lines;
+            this.lineScores = lineScores;
+            this.relevance = relevance;
+            this.emptyText = emptyText;
+        }
+
+        double score(int index) {
+            return lineScores != null ? lineScores[index] : index;
+        }
+    }
+
+    private final String purpose;
+    private final List<Section> sections = new ArrayList<>();
+    private String preamble = "";
+    private String footer = "";
+    private int estimatedTokens;
+    private int droppedLines;
+
+    /**
+     * @param purpose metrics label for the prompt (e.g. "chat", "action")
+     */
+    public PromptBuilder(String purpose) {
+        this.purpose = purpose;
+    }
+
+    public PromptBuilder preamble(String text) {
+        this.preamble = text;
+        return this;
+    }
+
+    public PromptBuilder footer(String text) {
+        this.footer = text;
+        return this;
+    }
+
+    /** Add a section whose newest (last) lines are kept first. */
+    public PromptBuilder section(String header, List<String> lines, double relevance) {
+        return section(header, lines, relevance, null);
+    }
+
+    /** Add a section that prints {@code emptyText} when {@code lines} is empty. */
+    public PromptBuilder section(String header, List<String> lines, double relevance, String emptyText) {
+        sections.add(new Section(header, lines != null ? lines : Collections.<String>emptyList(),
+                null, relevance, emptyText));
+        return this;
+    }
+
+    /** Add a section whose lines are kept in order of {@code scores} (one per line, higher first). */
+    public PromptBuilder scoredSection(String header, List<String> lines, double[] scores, double relevance) {
+        sections.add(new Section(header, lines, scores, relevance, null));
+        return this;
+    }
+
+    /**
+     * Build the prompt, dropping the least relevant context that does not fit.
+     */
+    public String build(int tokenBudget) {
+        int remaining = tokenBudget - TokenEstimator.estimate(preamble) - TokenEstimator.estimate(footer);
+        droppedLines = 0;
+
+        // Allocate budget by section relevance
+        List<Section> byRelevance = new ArrayList<>(sections);
+        byRelevance.sort((a, b) -> Double.compare(b.relevance, a.relevance));
+
+        Map<Section, boolean[]> kept = new IdentityHashMap<>();
+        for (Section section : byRelevance) {
+            boolean[] keep = new boolean[section.lines.size()];
+            kept.put(section, keep);
+            if (section.lines.isEmpty()) {
+                if (section.emptyText != null) {
+                    remaining -= TokenEstimator.estimate(section.header) + TokenEstimator.estimate(section.emptyText);
+                }
+                continue;
+            }
+
+            int headerCost = TokenEstimator.estimate(section.header);
+            if (remaining <= headerCost) {
+                droppedLines += section.lines.size();
+                continue;
+            }
+
+            Integer[] order = new Integer[section.lines.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Double.compare(section.score(b), section.score(a)));
+
+            boolean any = false;
+            int budget = remaining - headerCost;
+            for (int index : order) {
+                int cost = TokenEstimator.estimate(section.lines.get(index)) + 1; // "- " bullet
+                if (cost <= budget) {
+                    keep[index] = true;
+                    budget -= cost;
+                    any = true;
+                } else {
+                    droppedLines++;
+                }
+            }
+            if (any) remaining = budget;
+        }
+
+        // Emit in insertion order
+        StringBuilder prompt = new StringBuilder(preamble);
+        for (Section section : sections) {
+            boolean[] keep = kept.get(section);
+            if (section.lines.isEmpty()) {
+                if (section.emptyText != null) {
+                    prompt.append(section.header).append("\n- ").append(section.emptyText).append("\n\n");
+                }
+                continue;
+            }
+            boolean headerWritten = false;
+            for (int i = 0; i < keep.length; i++) {
+                if (!keep[i]) continue;
+                if (!headerWritten) {
+                    prompt.append(section.header).append("\n");
+                    headerWritten = true;
+                }
+                prompt.append("- ").append(section.lines.get(i)).append("\n");
+            }
+            if (headerWritten) prompt.append("\n");
+        }
+        prompt.append(footer);
+
+        String result = prompt.toString();
+        estimatedTokens = TokenEstimator.estimate(result);
+        MetricsRegistry.add(MetricsRegistry.name("prompt_context_tokens_total", "purpose", purpose), estimatedTokens);
+        MetricsRegistry.add(MetricsRegistry.name("prompt_lines_dropped_total", "purpose", purpose), droppedLines);
+        return result;
+    }
+
+    /** Token estimate of the last {@link #build} result. */
+    public int getEstimatedTokens() { return estimatedTokens; }
+
+    /** Number of context lines left out of the last {@link #build} result. */
+    public int getDroppedLines() { return droppedLines; }
+
+    // ---------------------------------------------------------------
+    //  Relevance helpers
+    // ---------------------------------------------------------------
+
+    /** Lower-cased words of 3+ letters, used for keyword-overlap scoring. */
+    public static Set<String> keywords(String text) {
+        Set<String> words = new HashSet<>();
+        if (text == null) return words;
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (word.length() >= 3) words.add(word);
+        }
+        return words;
+    }
+
+    /**
+     * Score each line by keyword overlap with the query, plus a small
+     * recency bonus so ties go to the newest line.
+     */
+    public static double[] scoreByOverlap(List<String> lines, Set<String> queryWords) {
+        double[] scores = new double[lines.size()];
+        for (int i = 0; i < scores.length; i++) {
+            int overlap = 0;
+            if (!queryWords.isEmpty()) {
+                for (String word : keywords(lines.get(i))) {
+                    if (queryWords.contains(word)) overlap++;
+                }
+            }
+            scores[i] = overlap + (double) (i + 1) / (scores.length + 1);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-provider latency tracking and circuit breaker.
+ *
+ * Successful call latencies feed an EWMA and a ring buffer of recent samples
+ * (for percentiles); the read timeout adapts to a multiple of the observed
+ * p99 within configured bounds. Consecutive transient failures open the
+ * circuit, after which requests fail fast until a cooldown has passed and a
+ * single probe request succeeds.
+ */
+public class ProviderHealth {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Map<String, ProviderHealth> PROVIDERS = new ConcurrentHashMap<>();
+
+    private static final int SAMPLE_WINDOW = 128;
+    private static final int MIN_SAMPLES_FOR_ADAPTIVE = 10;
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double TIMEOUT_P99_MULTIPLIER = 3.0;
+
+    public enum CircuitState {
+        CLOSED,     // healthy, all requests go through
+        OPEN,       // failing, requests fail fast
+        HALF_OPEN   // cooldown over, one probe request allowed
+    }
+
+    private final String provider;
+    private final long[] samples = new long[SAMPLE_WINDOW];
+    private int sampleCount;
+    private int sampleIndex;
+    private double ewmaMs = -1;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMs;
+    private boolean probeInFlight;
+
+    private ProviderHealth(String provider) {
+        this.provider = provider;
+    }
+
+    public static ProviderHealth forProvider(String provider) {
+        return PROVIDERS.computeIfAbsent(provider.toLowerCase(), ProviderHealth::new);
+    }
+
+    /** All providers seen so far, sorted by name. */
+    public static Map<String, ProviderHealth> all() {
+        return Collections.unmodifiableMap(new TreeMap<>(PROVIDERS));
+    }
+
+    public String getProvider() { return provider; }
+
+    // ---------------------------------------------------------------
+    //  Circuit breaker
+    // ---------------------------------------------------------------
+
+    /**
+     * Whether a request may be sent now. In HALF_OPEN only one probe is let
+     * through at a time.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAtMs < ModConfig.LLM_CIRCUIT_COOLDOWN_MS.get()) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                LOGGER.info("LLM provider " + provider + " circuit half-open, sending probe");
+                // fall through
+            case HALF_OPEN:
+            default:
+                if (probeInFlight) return false;
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess(long latencyMs) {
+        samples[sampleIndex] = latencyMs;
+        sampleIndex = (sampleIndex + 1) % SAMPLE_WINDOW;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_WINDOW);
+        ewmaMs = ewmaMs < 0 ? latencyMs : EWMA_ALPHA * latencyMs + (1 - EWMA_ALPHA) * ewmaMs;
+
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != CircuitState.CLOSED) {
+            LOGGER.info("LLM provider " + provider + " recovered, circuit closed");
+            state = CircuitState.CLOSED;
+        }
+    }
+
+    /** Record a transient failure (timeout, 429, 5xx, connection error). */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == CircuitState.HALF_OPEN
+                || (state == CircuitState.CLOSED && consecutiveFailures >= ModConfig.LLM_CIRCUIT_FAILURE_THRESHOLD.get())) {
+            state = CircuitState.OPEN;
+            openedAtMs = System.currentTimeMillis();
+            LOGGER.warn("LLM provider " + provider + " circuit opened after " + consecutiveFailures + " consecutive failures");
+        }
+    }
+
+    /** Record a non-transient failure (bad key, bad request); only frees a half-open probe slot. */
+    public synchronized void recordRejected() {
+        probeInFlight = false;
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    // ---------------------------------------------------------------
+    //  Latency
+    // ---------------------------------------------------------------
+
+    /** EWMA of successful call latency, or -1 before the first success. */
+    public synchronized double getEwmaMs() {
+        return ewmaMs;
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Whether enough latencies have been seen for percentiles to mean anything. */
+    public boolean hasLatencyEstimate() {
+        return getSampleCount() >= MIN_SAMPLES_FOR_ADAPTIVE;
+    }
+
+    /**
+     * Latency percentile over the recent sample window, or -1 with no samples.
+     * @param percentile 0-100
+     */
+    public synchronized long getPercentileMs(double percentile) {
+        if (sampleCount == 0) return -1;
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(sampleCount - 1, index))];
+    }
+
+    /**
+     * Read timeout for the next request: a multiple of the recent p99, clamped
+     * to the configured bounds. Until enough samples exist the maximum is used.
+     */
+    public int getReadTimeoutMs() {
+        int min = ModConfig.LLM_MIN_READ_TIMEOUT_MS.get();
+        int max = Math.max(min, ModConfig.LLM_MAX_READ_TIMEOUT_MS.get());
+        if (!hasLatencyEstimate()) return max;
+        long adaptive = (long) (getPercentileMs(99) * TIMEOUT_P99_MULTIPLIER);
+        return (int) Math.max(min, Math.min(max, adaptive));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s, ewma=%.0fms, p95=%dms, timeout=%dms",
+                provider, getState(), getEwmaMs(), getPercentileMs(95), getReadTimeoutMs());
+    }
+}
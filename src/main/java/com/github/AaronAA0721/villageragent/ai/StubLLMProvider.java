@@ -0,0 +1,168 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline LLM provider ({@code llm_api_type=stub}) for load and soak testing.
+ *
+ * Answers every request locally after a simulated latency, using templates
+ * that match what the callers parse (ACCEPT/REJECT trades, JSON identities,
+ * action plans, summaries, chat lines), and injects timeouts, 429s and 500s at configured
+ * rates. Request n always draws from {@code Random(seed, n)}, so a run with
+ * the same seed and request order sees the same latencies, failures and
+ * replies.
+ */
+public class StubLLMProvider {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final AtomicLong REQUEST_COUNTER = new AtomicLong();
+    private static final Pattern BATCH_COUNT = Pattern.compile("Generate (\\d+) unique villager");
+
+    private static final String[] NAMES = {
+        "Aldric", "Beatrice", "Cedric", "Diana", "Edmund", "Fiona", "Gregory", "Helena",
+        "Isaac", "Juliana", "Kenneth", "Lydia", "Marcus", "Natalia", "Oliver", "Penelope"
+    };
+    private static final String[] PLAN_ACTIONS = { "HARVEST", "GROW", "IDLE", "GATHER", "CRAFT" };
+    private static final String[] PERSONALITIES = {
+        "friendly and generous", "shrewd and business-minded", "cautious and reserved",
+        "adventurous and bold", "wise and thoughtful", "grumpy but fair"
+    };
+
+    /** Reset the request sequence so a new run replays from the start. */
+    public static void reset() {
+        REQUEST_COUNTER.set(0);
+    }
+
+    /**
+     * SplitMix64 finalizer. Consecutive request numbers must give unrelated
+     * seeds: java.util.Random's first draw barely moves between nearby
+     * seeds, which would make injected failures come in long runs.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param readTimeoutMs the caller's read timeout; simulated calls slower than this time out
+     */
+    public static String query(LLMPrompt prompt, int readTimeoutMs) throws Exception {
+        long sequence = REQUEST_COUNTER.getAndIncrement();
+        Random random = new Random(mix(ModConfig.STUB_SEED.get() * 0x9E3779B97F4A7C15L + sequence));
+
+        LOGGER.debug("=== Stub LLM Request #" + sequence + " ===");
+
+        // Failure injection is decided before the latency so the
+        // distribution of successful calls is unaffected by the failure mix.
+        double roll = random.nextDouble();
+        double timeoutRate = ModConfig.STUB_TIMEOUT_RATE.get();
+        double rateLimitRate = ModConfig.STUB_RATE_LIMIT_RATE.get();
+        double serverErrorRate = ModConfig.STUB_SERVER_ERROR_RATE.get();
+
+        long latency = roll < timeoutRate ? ModConfig.STUB_TIMEOUT_MS.get() : sampleLatencyMs(random);
+        if (roll < timeoutRate || latency > readTimeoutMs) {
+            sleep(Math.min(latency, readTimeoutMs));
+            throw new SocketTimeoutException("Stub LLM timed out (request #" + sequence + ")");
+        }
+        sleep(latency);
+        if (roll < timeoutRate + rateLimitRate) {
+            throw new LLMException("Stub API error 429", 429,
+                    "I'm having trouble connecting to my thoughts. (Error: 429)");
+        }
+        if (roll < timeoutRate + rateLimitRate + serverErrorRate) {
+            throw new LLMException("Stub API error 500", 500,
+                    "I'm having trouble connecting to my thoughts. (Error: 500)");
+        }
+
+        String response = respond(prompt, random);
+        LOGGER.debug("Stub response: " + response);
+        return response;
+    }
+
+    /**
+     * Draw a latency from the configured distribution, in milliseconds.
+     */
+    static long sampleLatencyMs(Random random) {
+        double median = ModConfig.STUB_LATENCY_MS.get();
+        double spread = ModConfig.STUB_LATENCY_SPREAD_MS.get();
+        double value;
+        switch (ModConfig.STUB_LATENCY_DISTRIBUTION.get().toLowerCase()) {
+            case "uniform":
+                value = median - spread + random.nextDouble() * 2 * spread;
+                break;
+            case "exponential":
+                value = -median / Math.log(2) * Math.log(1 - random.nextDouble());
+                break;
+            case "lognormal":
+                // spread is the distance from the median to roughly the 84th percentile
+                double sigma = median > 0 ? Math.log1p(spread / median) : 0;
+                value = median * Math.exp(sigma * random.nextGaussian());
+                break;
+            case "fixed":
+            default:
+                value = median;
+                break;
+        }
+        return Math.max(0, Math.round(value));
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    /**
+     * Pick a reply template based on what the prompt is asking for.
+     */
+    private static String respond(LLMPrompt prompt, Random random) {
+        String system = prompt.getStaticPrefix();
+        String user = prompt.getUserPrompt();
+
+        if (system.contains("ACCEPT or REJECT")) {
+            boolean accept = random.nextDouble() < ModConfig.STUB_TRADE_ACCEPT_RATE.get();
+            if (prompt.isJsonOutput()) {
+                return accept ? "{\"decision\":\"ACCEPT\",\"reason\":\"That seems like a fair deal to me.\"}"
+                              : "{\"decision\":\"REJECT\",\"reason\":\"I'm afraid that's not worth my while.\"}";
+            }
+            return accept ? "ACCEPT: That seems like a fair deal to me."
+                          : "REJECT: I'm afraid that's not worth my while.";
+        }
+
+        if (system.contains("villager characters")) {
+            Matcher matcher = BATCH_COUNT.matcher(user);
+            int count = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+            StringBuilder json = new StringBuilder("{\"villagers\":[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) json.append(',');
+                json.append("{\"name\":\"").append(NAMES[random.nextInt(NAMES.length)])
+                    .append("\",\"personality\":\"").append(PERSONALITIES[random.nextInt(PERSONALITIES.length)])
+                    .append("\"}");
+            }
+            return json.append("]}").toString();
+        }
+
+        if (user.startsWith("What should you do next")) {
+            String type = PLAN_ACTIONS[random.nextInt(PLAN_ACTIONS.length)];
+            return "{\"type\":\"" + type + "\",\"target\":\"wheat\",\"quantity\":"
+                    + (1 + random.nextInt(16)) + ",\"reason\":\"There is work to be done.\"}";
+        }
+
+        if (system.contains("You maintain the memory")) {
+            return "The player and the villager chatted about the village and its work.";
+        }
+
+        List<? extends String> replies = ModConfig.STUB_CHAT_REPLIES.get();
+        if (replies.isEmpty()) {
+            return "Good day to you, traveler.";
+        }
+        return replies.get(random.nextInt(replies.size()));
+    }
+}
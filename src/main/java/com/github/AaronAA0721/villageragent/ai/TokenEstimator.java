@@ -0,0 +1,26 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+/**
+ * Cheap local token estimate for prompt budgeting.
+ * Not a real tokenizer — English text averages about 4 characters or
+ * 0.75 words per token for the BPE vocabularies used by the supported
+ * providers, so we take the larger of the two estimates.
+ */
+public class TokenEstimator {
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) return 0;
+
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean ws = Character.isWhitespace(text.charAt(i));
+            if (!ws && !inWord) words++;
+            inWord = !ws;
+        }
+
+        int byChars = (text.length() + 3) / 4;
+        int byWords = (words * 4 + 2) / 3;
+        return Math.max(byChars, byWords);
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local first pass over a trade proposal, run before the LLM is asked.
+ *
+ * Trades the villager cannot fulfil, or that offer nothing, are rejected
+ * outright. Otherwise both sides are priced with the configured item-value
+ * table (in emeralds) and the offer/request ratio is compared against
+ * accept/reject thresholds scaled by personality keywords, so a generous
+ * villager accepts at a lower ratio than a shrewd one. Anything in between,
+ * or involving items without a price, is left to the LLM.
+ */
+public class TradeEvaluator {
+
+    public enum Verdict {
+        ACCEPT,
+        REJECT,
+        ASK_LLM
+    }
+
+    public static class Decision {
+        private final Verdict verdict;
+        private final String reason;
+
+        Decision(Verdict verdict, String reason) {
+            this.verdict = verdict;
+            this.reason = reason;
+        }
+
+        public Verdict getVerdict() { return verdict; }
+        public String getReason() { return reason; }
+    }
+
+    private static List<? extends String> cachedValueEntries;
+    private static Map<String, Double> cachedValues = new HashMap<>();
+    private static List<? extends String> cachedModifierEntries;
+    private static Map<String, Double> cachedModifiers = new HashMap<>();
+
+    /**
+     * @param offers   stacks the player gives the villager (empty stacks ignored)
+     * @param requests stacks the player wants from the villager (empty stacks ignored)
+     */
+    public static Decision evaluate(VillagerAgentData agent, List<ItemStack> offers, List<ItemStack> requests) {
+        Decision decision = decide(agent, nonEmpty(offers), nonEmpty(requests));
+        MetricsRegistry.increment(MetricsRegistry.name("trade_decisions_total",
+                "path", decision.getVerdict().name().toLowerCase()));
+        return decision;
+    }
+
+    private static Decision decide(VillagerAgentData agent, List<ItemStack> offers, List<ItemStack> requests) {
+        if (!ModConfig.TRADE_FAST_PATH_ENABLED.get()) {
+            return new Decision(Verdict.ASK_LLM, "");
+        }
+
+        // Availability, summing repeated items across both request slots
+        Map<String, Integer> requestedCounts = new HashMap<>();
+        for (ItemStack stack : requests) {
+            String id = itemId(stack);
+            int total = requestedCounts.merge(id, stack.getCount(), Integer::sum);
+            if (!agent.getInventory().hasItem(stack, total)) {
+                return new Decision(Verdict.REJECT, "I don't have " + total + " " + displayName(stack) + " to give you.");
+            }
+        }
+
+        if (offers.isEmpty()) {
+            return new Decision(Verdict.REJECT, requests.isEmpty()
+                    ? "There's nothing to trade here."
+                    : "I'm not giving my things away for nothing!");
+        }
+        if (requests.isEmpty()) {
+            return new Decision(Verdict.ACCEPT, "A gift? How kind of you, thank you!");
+        }
+
+        double offerValue = value(offers);
+        double requestValue = value(requests);
+        if (offerValue < 0 || requestValue <= 0) {
+            // Unpriced or enchanted items: let the LLM judge
+            return new Decision(Verdict.ASK_LLM, "");
+        }
+
+        double ratio = offerValue / requestValue;
+        double modifier = personalityModifier(agent.getPersonality());
+        if (ratio >= ModConfig.TRADE_ACCEPT_RATIO.get() * modifier) {
+            return new Decision(Verdict.ACCEPT, "That's a fine deal, I'll take it.");
+        }
+        if (ratio <= ModConfig.TRADE_REJECT_RATIO.get() * modifier) {
+            return new Decision(Verdict.REJECT, "That's not nearly worth what you're asking for.");
+        }
+        return new Decision(Verdict.ASK_LLM, "");
+    }
+
+    /**
+     * Total emerald value of the stacks, or -1 if any stack has no price.
+     * Damaged tools are discounted by their remaining durability.
+     */
+    private static double value(List<ItemStack> stacks) {
+        Map<String, Double> values = itemValues();
+        double total = 0;
+        for (ItemStack stack : stacks) {
+            Double unit = values.get(itemId(stack));
+            if (unit == null || stack.isEnchanted()) return -1;
+            double condition = stack.isDamageableItem() && stack.getMaxDamage() > 0
+                    ? 1.0 - (double) stack.getDamageValue() / stack.getMaxDamage()
+                    : 1.0;
+            total += unit * stack.getCount() * condition;
+        }
+        return total;
+    }
+
+    /**
+     * Product of the multipliers of every personality keyword that appears in
+     * the villager's personality. Above 1 the villager drives a harder bargain.
+     */
+    private static double personalityModifier(String personality) {
+        String lower = personality != null ? personality.toLowerCase() : "";
+        double modifier = 1.0;
+        for (Map.Entry<String, Double> entry : personalityModifiers().entrySet()) {
+            if (lower.contains(entry.getKey())) {
+                modifier *= entry.getValue();
+            }
+        }
+        return modifier;
+    }
+
+    private static synchronized Map<String, Double> itemValues() {
+        List<? extends String> entries = ModConfig.TRADE_ITEM_VALUES.get();
+        if (entries != cachedValueEntries) {
+            cachedValues = parseTable(entries, true);
+            cachedValueEntries = entries;
+        }
+        return cachedValues;
+    }
+
+    private static synchronized Map<String, Double> personalityModifiers() {
+        List<? extends String> entries = ModConfig.TRADE_PERSONALITY_MODIFIERS.get();
+        if (entries != cachedModifierEntries) {
+            cachedModifiers = parseTable(entries, false);
+            cachedModifierEntries = entries;
+        }
+        return cachedModifiers;
+    }
+
+    /** Parse "key=number" entries, skipping malformed ones. */
+    private static Map<String, Double> parseTable(List<? extends String> entries, boolean itemKeys) {
+        Map<String, Double> table = new HashMap<>();
+        for (String entry : entries) {
+            int eq = entry.lastIndexOf('=');
+            if (eq <= 0) continue;
+            String key = entry.substring(0, eq).trim().toLowerCase();
+            if (itemKeys && !key.contains(":")) key = "minecraft:" + key;
+            try {
+                table.put(key, Double.parseDouble(entry.substring(eq + 1).trim()));
+            } catch (NumberFormatException ignored) {
+                // skip malformed entry
+            }
+        }
+        return table;
+    }
+
+    private static List<ItemStack> nonEmpty(List<ItemStack> stacks) {
+        List<ItemStack> result = new ArrayList<>();
+        for (ItemStack stack : stacks) {
+            if (!stack.isEmpty()) result.add(stack);
+        }
+        return result;
+    }
+
+    private static String itemId(ItemStack stack) {
+        return String.valueOf(stack.getItem().getRegistryName());
+    }
+
+    private static String displayName(ItemStack stack) {
+        String id = itemId(stack);
+        return id.substring(id.indexOf(':') + 1).replace('_', ' ');
+    }
+}
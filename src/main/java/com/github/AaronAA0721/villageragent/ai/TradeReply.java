@@ -0,0 +1,80 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * A villager's decision on a trade proposal, decoded from the LLM reply.
+ * The reply is requested as {@code {"decision":"ACCEPT|REJECT","reason":"..."}};
+ * a plain-text "ACCEPT: reason" reply is still understood.
+ */
+public class TradeReply {
+    private final boolean accepted;
+    private final String reason;
+
+    public TradeReply(boolean accepted, String reason) {
+        this.accepted = accepted;
+        this.reason = reason;
+    }
+
+    public boolean isAccepted() { return accepted; }
+    public String getReason() { return reason; }
+
+    public static TradeReply parse(String response) {
+        int objectStart = response.indexOf('{');
+        if (objectStart >= 0) {
+            TradeReply reply = parseJson(response.substring(objectStart));
+            if (reply != null) return reply;
+        }
+        return parseText(response);
+    }
+
+    private static TradeReply parseJson(String json) {
+        String decision = null;
+        String reason = "";
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                JsonToken token = reader.peek();
+                if ("decision".equals(key) && token == JsonToken.STRING) {
+                    decision = reader.nextString().trim().toUpperCase();
+                } else if ("accept".equals(key) && token == JsonToken.BOOLEAN) {
+                    decision = reader.nextBoolean() ? "ACCEPT" : "REJECT";
+                } else if ("reason".equals(key) && token == JsonToken.STRING) {
+                    reason = reader.nextString().trim();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // fall through with whatever was read before the error
+        }
+        if (decision == null) return null;
+        return new TradeReply(decision.startsWith("ACCEPT"), reason);
+    }
+
+    /**
+     * Legacy "ACCEPT: reason" / "REJECT - reason" text. Anything else (such as
+     * a fallback line after an LLM failure) is a rejection with the text as reason.
+     */
+    private static TradeReply parseText(String response) {
+        String trimmed = response.trim();
+        String upper = trimmed.toUpperCase();
+        boolean accepted = upper.startsWith("ACCEPT");
+        if (!accepted && !upper.startsWith("REJECT")) {
+            return new TradeReply(false, trimmed);
+        }
+
+        String reason = trimmed.substring(6).trim();
+        // Clean up the reason - remove leading punctuation
+        while (!reason.isEmpty() && ":-.!".indexOf(reason.charAt(0)) >= 0) {
+            reason = reason.substring(1).trim();
+        }
+        return new TradeReply(accepted, reason);
+    }
+}
@@ -0,0 +1,420 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.DoorBlock;
+import net.minecraft.block.FenceGateBlock;
+import net.minecraft.entity.ai.brain.memory.MemoryModuleType;
+import net.minecraft.entity.merchant.villager.VillagerEntity;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.GlobalPos;
+import net.minecraft.village.PointOfInterestManager;
+import net.minecraft.village.PointOfInterestType;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Waypoint graph of each village, so long trips are a graph lookup plus
+ * short walks between waypoints instead of one long path search.
+ *
+ * A village's graph is built the first time one of its villagers needs it.
+ * Its nodes are the places villagers go (job sites, beds, the meeting
+ * point and farm plots from {@link FarmDispatcher}) plus a grid of
+ * walkable ground around the meeting point. Nodes close to each other are
+ * linked when the ground along the straight line between them can be
+ * walked: solid footing with head room, one block up or down per step.
+ * The check is coarse on purpose; the villager's own pathfinder works out
+ * the details of each short leg.
+ *
+ * Block changes re-check only the links whose line crosses the changed
+ * spot, a few per tick. The whole graph is dropped and rebuilt after
+ * {@link #REBUILD_TICKS}, picking up new beds and workstations.
+ *
+ * Villagers without a meeting point have no graph. Only loaded chunks are
+ * read, through {@link LoadedBlocks}. Server thread only.
+ */
+public class VillageNavGraph {
+    /** Nodes are gathered within this distance of the meeting point. */
+    private static final int VILLAGE_RADIUS = 64;
+    private static final int SAMPLE_SPACING = 8;
+    /** Longest link; grid neighbours, diagonals included, are within it. */
+    private static final int LINK_RANGE = 12;
+    private static final int LINK_RANGE_SQ = LINK_RANGE * LINK_RANGE;
+    /** Graphs are dropped and rebuilt after this many ticks (ten minutes). */
+    private static final long REBUILD_TICKS = 12_000L;
+    private static final int RECHECKS_PER_TICK = 16;
+    private static final int NO_FOOTING = Integer.MIN_VALUE;
+
+    /** How close (squared) counts as having passed a waypoint. */
+    static final double WAYPOINT_REACHED_SQ = 2.5 * 2.5;
+
+    private static final Predicate<PointOfInterestType> VILLAGE_POIS = type ->
+            type == PointOfInterestType.HOME || type == PointOfInterestType.MEETING
+                    || PointOfInterestType.ALL_JOBS.test(type);
+
+    private static final class Node {
+        final int index;
+        final BlockPos pos;
+        final List<Link> links = new ArrayList<>();
+
+        Node(int index, BlockPos pos) {
+            this.index = index;
+            this.pos = pos;
+        }
+    }
+
+    private static final class Link {
+        final Node a;
+        final Node b;
+        final double length;
+        boolean open;
+
+        Link(Node a, Node b) {
+            this.a = a;
+            this.b = b;
+            this.length = Math.sqrt(a.pos.distSqr(b.pos));
+        }
+
+        Node other(Node node) {
+            return node == a ? b : a;
+        }
+
+        /** Whether {@code pos} is close enough to the line for a change there to matter. */
+        boolean near(BlockPos pos) {
+            return pos.getX() >= Math.min(a.pos.getX(), b.pos.getX()) - 1
+                    && pos.getX() <= Math.max(a.pos.getX(), b.pos.getX()) + 1
+                    && pos.getZ() >= Math.min(a.pos.getZ(), b.pos.getZ()) - 1
+                    && pos.getZ() <= Math.max(a.pos.getZ(), b.pos.getZ()) + 1
+                    && pos.getY() >= Math.min(a.pos.getY(), b.pos.getY()) - 3
+                    && pos.getY() <= Math.max(a.pos.getY(), b.pos.getY()) + 3;
+        }
+    }
+
+    private static final class Graph {
+        final List<Node> nodes = new ArrayList<>();
+        final List<Link> links = new ArrayList<>();
+        final Map<Long, List<Link>> linksByChunk = new HashMap<>();
+        final Set<Link> dirty = new LinkedHashSet<>();
+        final long builtAt;
+
+        Graph(long builtAt) {
+            this.builtAt = builtAt;
+        }
+
+        /** Old enough to rebuild, or built in another save whose clock ran further. */
+        boolean expired(long gameTime) {
+            return gameTime < builtAt || gameTime - builtAt >= REBUILD_TICKS;
+        }
+    }
+
+    private static final Map<GlobalPos, Graph> GRAPHS = new HashMap<>();
+    private static volatile int nodeCount;
+    private static volatile int linkCount;
+
+    /**
+     * Waypoints for {@code villager} to walk through on the way to
+     * {@code destination}, in order. Empty if the trip starts and ends at
+     * the same node; null if there is no graph or no route through it.
+     */
+    static List<BlockPos> route(ServerWorld world, VillagerEntity villager, BlockPos destination) {
+        if (!ModConfig.NAV_GRAPH_ENABLED.get()) return null;
+        Optional<GlobalPos> meetingPoint = villager.getBrain().getMemory(MemoryModuleType.MEETING_POINT);
+        if (!meetingPoint.isPresent() || !meetingPoint.get().dimension().equals(world.dimension())) {
+            MetricsRegistry.increment(MetricsRegistry.name("nav_graph_routes_total", "result", "no_graph"));
+            return null;
+        }
+        Graph graph = GRAPHS.get(meetingPoint.get());
+        if (graph == null || graph.expired(world.getGameTime())) {
+            graph = build(world, meetingPoint.get());
+            GRAPHS.put(meetingPoint.get(), graph);
+            updateCounts();
+        }
+
+        long start = System.nanoTime();
+        List<BlockPos> waypoints = search(graph, nearest(graph, villager.blockPosition()), nearest(graph, destination));
+        MetricsRegistry.recordSince("nav_graph_lookup_seconds", start);
+        MetricsRegistry.increment(MetricsRegistry.name("nav_graph_routes_total", "result",
+                waypoints == null ? "no_route" : "found"));
+        return waypoints;
+    }
+
+    /** A block changed: re-check the links whose line runs over it. */
+    public static void onBlockChanged(World world, BlockPos pos) {
+        if (GRAPHS.isEmpty()) return;
+        long chunk = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        for (Map.Entry<GlobalPos, Graph> entry : GRAPHS.entrySet()) {
+            if (!entry.getKey().dimension().equals(world.dimension())) continue;
+            List<Link> links = entry.getValue().linksByChunk.get(chunk);
+            if (links == null) continue;
+            for (Link link : links) {
+                if (link.near(pos)) entry.getValue().dirty.add(link);
+            }
+        }
+    }
+
+    /** Re-check a few changed links and drop old graphs. Call once per tick. */
+    public static void tick(ServerWorld world) {
+        if (GRAPHS.isEmpty()) return;
+        long gameTime = world.getGameTime();
+        boolean dropped = false;
+        Iterator<Map.Entry<GlobalPos, Graph>> it = GRAPHS.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<GlobalPos, Graph> entry = it.next();
+            if (!entry.getKey().dimension().equals(world.dimension())) continue;
+            Graph graph = entry.getValue();
+            if (graph.expired(gameTime)) {
+                it.remove();
+                dropped = true;
+                continue;
+            }
+            Iterator<Link> dirty = graph.dirty.iterator();
+            for (int i = 0; i < RECHECKS_PER_TICK && dirty.hasNext(); i++) {
+                Link link = dirty.next();
+                dirty.remove();
+                link.open = walkable(world, link.a.pos, link.b.pos);
+                MetricsRegistry.increment("nav_graph_link_rechecks_total");
+            }
+        }
+        if (dropped) updateCounts();
+    }
+
+    /** Forget every graph, e.g. when the server stops and another save may be loaded next. */
+    public static void clear() {
+        GRAPHS.clear();
+        updateCounts();
+    }
+
+    public static int getNodeCount() {
+        return nodeCount;
+    }
+
+    public static int getLinkCount() {
+        return linkCount;
+    }
+
+    // ---------------------------------------------------------------
+    //  Building
+    // ---------------------------------------------------------------
+
+    private static Graph build(ServerWorld world, GlobalPos meetingPoint) {
+        long start = System.nanoTime();
+        BlockPos center = meetingPoint.pos();
+        Graph graph = new Graph(world.getGameTime());
+        Set<Long> taken = new HashSet<>();
+
+        // Places villagers go: beds, workstations, the bell, farm plots
+        List<BlockPos> places = new ArrayList<>();
+        // Chunk by chunk, so POI data is only read for loaded chunks and never loaded from disk
+        int radiusSq = VILLAGE_RADIUS * VILLAGE_RADIUS;
+        for (int cx = (center.getX() - VILLAGE_RADIUS) >> 4; cx <= (center.getX() + VILLAGE_RADIUS) >> 4; cx++) {
+            for (int cz = (center.getZ() - VILLAGE_RADIUS) >> 4; cz <= (center.getZ() + VILLAGE_RADIUS) >> 4; cz++) {
+                if (world.getChunkSource().getChunkNow(cx, cz) == null) continue;
+                world.getPoiManager().getInChunk(VILLAGE_POIS, new ChunkPos(cx, cz), PointOfInterestManager.Status.ANY)
+                        .filter(poi -> poi.getPos().distSqr(center) <= radiusSq)
+                        .forEach(poi -> places.add(poi.getPos()));
+            }
+        }
+        places.addAll(FarmDispatcher.getPlotAnchors(meetingPoint));
+        for (BlockPos place : places) {
+            BlockPos feet = footingNear(world, place);
+            if (feet != null && taken.add(feet.asLong())) addNode(graph, feet);
+        }
+
+        // Walkable ground on a grid around the meeting point
+        for (int x = -VILLAGE_RADIUS; x <= VILLAGE_RADIUS; x += SAMPLE_SPACING) {
+            for (int z = -VILLAGE_RADIUS; z <= VILLAGE_RADIUS; z += SAMPLE_SPACING) {
+                int surface = LoadedBlocks.getHeight(world, Heightmap.Type.MOTION_BLOCKING_NO_LEAVES,
+                        center.getX() + x, center.getZ() + z);
+                if (surface < 0) continue;
+                BlockPos feet = new BlockPos(center.getX() + x, surface, center.getZ() + z);
+                if (standable(world, feet) && taken.add(feet.asLong())) addNode(graph, feet);
+            }
+        }
+
+        for (int i = 0; i < graph.nodes.size(); i++) {
+            Node a = graph.nodes.get(i);
+            for (int j = i + 1; j < graph.nodes.size(); j++) {
+                Node b = graph.nodes.get(j);
+                if (a.pos.distSqr(b.pos) > LINK_RANGE_SQ) continue;
+                Link link = new Link(a, b);
+                link.open = walkable(world, a.pos, b.pos);
+                a.links.add(link);
+                b.links.add(link);
+                graph.links.add(link);
+                // Closed links are indexed too, so a change that clears the way opens them
+                for (long chunk : lineChunks(a.pos, b.pos)) {
+                    graph.linksByChunk.computeIfAbsent(chunk, k -> new ArrayList<>()).add(link);
+                }
+            }
+        }
+
+        MetricsRegistry.recordSince("nav_graph_build_seconds", start);
+        MetricsRegistry.increment("nav_graph_builds_total");
+        return graph;
+    }
+
+    private static void addNode(Graph graph, BlockPos pos) {
+        graph.nodes.add(new Node(graph.nodes.size(), pos.immutable()));
+    }
+
+    /** Somewhere to stand at or beside a point of interest (a bed or workstation is not walkable itself). */
+    private static BlockPos footingNear(ServerWorld world, BlockPos place) {
+        if (!LoadedBlocks.isLoaded(world, place)) return null;
+        BlockPos[] candidates = {place, place.above(), place.north(), place.south(), place.east(), place.west()};
+        for (BlockPos candidate : candidates) {
+            for (int dy = 0; dy >= -1; dy--) {
+                BlockPos feet = candidate.above(dy);
+                if (standable(world, feet)) return feet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a villager can walk the straight line from {@code from} to
+     * {@code to}: every column on the way has footing within one block of
+     * the last one.
+     */
+    private static boolean walkable(ServerWorld world, BlockPos from, BlockPos to) {
+        if (!LoadedBlocks.isLoaded(world, from) || !standable(world, from)) return false;
+        int dx = to.getX() - from.getX();
+        int dz = to.getZ() - from.getZ();
+        int steps = Math.max(Math.abs(dx), Math.abs(dz));
+        int y = from.getY();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = 1; i <= steps; i++) {
+            pos.set(from.getX() + Math.round((float) dx * i / steps), y, from.getZ() + Math.round((float) dz * i / steps));
+            if (!LoadedBlocks.isLoaded(world, pos)) return false;
+            y = footingY(world, pos, y);
+            if (y == NO_FOOTING) return false;
+        }
+        return Math.abs(y - to.getY()) <= 1;
+    }
+
+    /** Feet height at this column within one block of {@code y}, level first, or NO_FOOTING. */
+    private static int footingY(ServerWorld world, BlockPos.Mutable pos, int y) {
+        for (int dy : new int[]{0, 1, -1}) {
+            pos.setY(y + dy);
+            if (standable(world, pos)) return y + dy;
+        }
+        return NO_FOOTING;
+    }
+
+    private static boolean standable(ServerWorld world, BlockPos feet) {
+        BlockPos groundPos = feet.below();
+        BlockState ground = LoadedBlocks.getBlockState(world, groundPos);
+        if (ground.getCollisionShape(world, groundPos).isEmpty() || !ground.getFluidState().isEmpty()) return false;
+        // Fences and walls have collision above their block; nobody walks along their tops
+        if (ground.is(BlockTags.FENCES) || ground.is(BlockTags.WALLS) || ground.getBlock() instanceof FenceGateBlock) {
+            return false;
+        }
+        return passable(world, feet) && passable(world, feet.above());
+    }
+
+    private static boolean passable(ServerWorld world, BlockPos pos) {
+        BlockState state = LoadedBlocks.getBlockState(world, pos);
+        if (!state.getFluidState().isEmpty()) return false;
+        // Villagers open doors
+        return state.getBlock() instanceof DoorBlock || state.getCollisionShape(world, pos).isEmpty();
+    }
+
+    /** Chunks the straight line from {@code a} to {@code b} runs through. */
+    private static Set<Long> lineChunks(BlockPos a, BlockPos b) {
+        Set<Long> chunks = new HashSet<>();
+        int dx = b.getX() - a.getX();
+        int dz = b.getZ() - a.getZ();
+        int steps = Math.max(1, Math.max(Math.abs(dx), Math.abs(dz)));
+        for (int i = 0; i <= steps; i++) {
+            int x = a.getX() + Math.round((float) dx * i / steps);
+            int z = a.getZ() + Math.round((float) dz * i / steps);
+            chunks.add(ChunkPos.asLong(x >> 4, z >> 4));
+        }
+        return chunks;
+    }
+
+    private static void updateCounts() {
+        int nodes = 0;
+        int links = 0;
+        for (Graph graph : GRAPHS.values()) {
+            nodes += graph.nodes.size();
+            links += graph.links.size();
+        }
+        nodeCount = nodes;
+        linkCount = links;
+    }
+
+    // ---------------------------------------------------------------
+    //  Lookup
+    // ---------------------------------------------------------------
+
+    /** The node nearest to {@code pos}, or null if none is within a link's reach. */
+    private static Node nearest(Graph graph, BlockPos pos) {
+        Node best = null;
+        double bestDist = LINK_RANGE_SQ;
+        for (Node node : graph.nodes) {
+            double dist = node.pos.distSqr(pos);
+            if (dist <= bestDist) {
+                best = node;
+                bestDist = dist;
+            }
+        }
+        return best;
+    }
+
+    /** A* over the open links; the waypoints after {@code from}, ending with {@code to}. */
+    private static List<BlockPos> search(Graph graph, Node from, Node to) {
+        if (from == null || to == null) return null;
+        if (from == to) return Collections.emptyList();
+
+        int size = graph.nodes.size();
+        double[] cost = new double[size];
+        Arrays.fill(cost, Double.MAX_VALUE);
+        Node[] previous = new Node[size];
+        boolean[] done = new boolean[size];
+        cost[from.index] = 0;
+        PriorityQueue<double[]> open = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+        open.add(new double[]{Math.sqrt(from.pos.distSqr(to.pos)), from.index});
+
+        while (!open.isEmpty()) {
+            Node node = graph.nodes.get((int) open.poll()[1]);
+            if (done[node.index]) continue;
+            done[node.index] = true;
+            if (node == to) break;
+            for (Link link : node.links) {
+                if (!link.open) continue;
+                Node next = link.other(node);
+                double nextCost = cost[node.index] + link.length;
+                if (done[next.index] || nextCost >= cost[next.index]) continue;
+                cost[next.index] = nextCost;
+                previous[next.index] = node;
+                open.add(new double[]{nextCost + Math.sqrt(next.pos.distSqr(to.pos)), next.index});
+            }
+        }
+        if (!done[to.index]) return null;
+
+        List<BlockPos> waypoints = new ArrayList<>();
+        for (Node node = to; node != from; node = previous[node.index]) {
+            waypoints.add(node.pos);
+        }
+        Collections.reverse(waypoints);
+        return waypoints;
+    }
+}
@@ -2,6 +2,11 @@ package com.github.AaronAA0721.villageragent.ai;
 
 import net.minecraft.util.math.BlockPos;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
 /**
  * Represents an action a villager can take.
  * For world-interacting actions (HARVEST, GROW), the villager must walk to
@@ -35,6 +40,9 @@ public class VillagerAction {
     private long createdTime;
     private BlockPos targetBlockPos; // The block the villager is walking toward
     private int stuckTicks;         // How many ticks the villager has been unable to reach target
+    private long walkStartTick;     // Game tick the villager started walking to targetBlockPos
+    private final Deque<BlockPos> waypoints = new ArrayDeque<>(); // Village graph waypoints on the way to targetBlockPos
+    private final List<BlockPos> heldStops = new ArrayList<>(); // Route stops reserved while SEARCHING for a path
 
     public VillagerAction(ActionType actionType, String description) {
         this.actionType = actionType;
@@ -61,6 +69,16 @@ public class VillagerAction {
     public int getStuckTicks() { return stuckTicks; }
     public void incrementStuckTicks() { this.stuckTicks++; }
     public void resetStuckTicks() { this.stuckTicks = 0; }
+    public long getWalkStartTick() { return walkStartTick; }
+    public void setWalkStartTick(long tick) { this.walkStartTick = tick; }
+    public Deque<BlockPos> getWaypoints() { return waypoints; }
+    public List<BlockPos> getHeldStops() { return heldStops; }
+
+    /** Where the villager is heading now: the next waypoint, or the target block once past them all. */
+    public BlockPos getWalkTarget() {
+        BlockPos waypoint = waypoints.peek();
+        return waypoint != null ? waypoint : targetBlockPos;
+    }
 
     @Override
     public String toString() {
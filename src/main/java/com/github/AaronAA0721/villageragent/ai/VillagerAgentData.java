@@ -10,7 +10,9 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Stores AI agent data for each villager including personality, memory, goals, and inventory
@@ -24,6 +26,12 @@ public class VillagerAgentData {
     /** Maximum number of conversation entries kept (safety cap). */
     private static final int MAX_CONVERSATION_ENTRIES = 40;
 
+    /** How many of the newest memories are ranked for inclusion in a chat prompt. */
+    private static final int CHAT_MEMORY_CANDIDATES = 10;
+
+    /** Summarize only once at least this many lines have fallen out of the verbatim window. */
+    private static final int SUMMARY_MIN_NEW_LINES = 4;
+
     // ── Inner class: a single chat line with its game-time stamp ──
     public static class TimestampedMessage {
         private final String text;
@@ -53,14 +61,30 @@ public class VillagerAgentData {
     private long lastThinkTime;
     private String currentActivity;
     private VillagerAction currentAction;  // Current action being executed
+    private final Deque<VillagerAction> queuedActions = new ArrayDeque<>();  // rest of a farming route, run after currentAction
     private long actionStartTime;  // When the current action started
     private boolean llmGenerationFailed = false;
     private String llmErrorMessage = null;
     private long lastRestockTime = 0;  // Track when villager last restocked at job block
     private boolean inFarmingState = false;       // true while the villager is actively farming an area
     private int farmingCooldownTicks = 0;          // >0 means the villager is resting after a farming session
+    private long farmRevisitTick = -1;             // game tick to come back to the field, -1 when none is scheduled
+    private BlockPos farmRevisitCenter;            // where the villager last farmed, for the scheduled revisit
+    private volatile boolean identityPending = false;   // LLM name/personality requested but not yet arrived
+    private volatile boolean identityChanged = false;   // LLM identity arrived; entity name tag needs refreshing
+    private volatile String conversationSynopsis = "";  // rolling summary of today's older conversation
+    private long synopsisTick = 0;                       // game tick the synopsis was last updated
+    private final AtomicBoolean summaryInFlight = new AtomicBoolean(false);
+    private final Queue<Consumer<VillagerAgentData>> mailbox = new ConcurrentLinkedQueue<>();  // async results, applied on the server thread
 
     public VillagerAgentData(UUID villagerId) {
+        this(villagerId, true);
+    }
+
+    /**
+     * @param generateIdentity false when the identity will be loaded from NBT right after
+     */
+    public VillagerAgentData(UUID villagerId, boolean generateIdentity) {
         this.villagerId = villagerId;
         this.profession = "Villager";  // Default, will be updated from actual villager
         this.conversationHistory = new ArrayList<>();
@@ -73,7 +97,7 @@ public class VillagerAgentData {
         this.currentActivity = "idle";
 
         // Try to generate name and personality using LLM
-        if (shouldUseLLM()) {
+        if (generateIdentity && shouldUseLLM()) {
             generateWithLLM();
         } else {
             // Fallback to random generation
@@ -136,81 +160,79 @@ public class VillagerAgentData {
     }
 
     /**
-     * Generate name and personality using LLM
+     * Generate name and personality using LLM.
+     * The villager gets a random placeholder identity right away; the LLM one
+     * arrives asynchronously (batched with other villagers spawning at the same
+     * time) and replaces it unless saved data was loaded in the meantime.
      */
     private void generateWithLLM() {
-        String apiKey = ModConfig.LLM_API_KEY.get();
-
         // Check if API key is configured
-        if (apiKey == null || apiKey.trim().isEmpty()) {
+        if (!LLMService.isConfigured()) {
             useFallbackGeneration("API key not configured. Please set llmApiKey in config file.");
             return;
         }
 
-        String systemPrompt = "You are a creative assistant that generates unique medieval villager characters. " +
-                "Respond ONLY with a JSON object in this exact format: {\"name\":\"VillagerName\",\"personality\":\"personality description\"}. " +
-                "The name should be a single medieval-style first name. " +
-                "The personality should be a short phrase (3-6 words) describing their character traits.";
-
-        String userPrompt = "Generate a unique villager character with a medieval name and interesting personality.";
-
-        try {
-            CompletableFuture<String> future = LLMService.queryLLM(systemPrompt, userPrompt);
-            String response = future.get(10, TimeUnit.SECONDS); // 10 second timeout
-
-            LOGGER.info("LLM Response received: " + response);
-
-            // Parse the JSON response
-            if (response.contains("{") && response.contains("}")) {
-                String json = response.substring(response.indexOf("{"), response.lastIndexOf("}") + 1);
-                LOGGER.info("Extracted JSON: " + json);
-
-                // Simple JSON parsing (avoiding external libraries)
-                String nameValue = extractJsonValue(json, "name");
-                String personalityValue = extractJsonValue(json, "personality");
-
-                LOGGER.info("Parsed name: " + nameValue + ", personality: " + personalityValue);
+        this.personality = generateRandomPersonality();
+        this.name = generateRandomName();
+        this.identityPending = true;
 
-                if (nameValue != null && personalityValue != null && !nameValue.isEmpty() && !personalityValue.isEmpty()) {
-                    this.name = nameValue;
-                    this.personality = personalityValue;
-                    LOGGER.info("Generated villager via LLM: " + name + " - " + personality);
-                    return;
-                }
+        VillagerIdentity.request().whenComplete((identity, error) -> post(agent -> {
+            if (!identityPending) {
+                return; // saved data was loaded first — keep it
             }
-
-            // If parsing failed, use fallback
-            LOGGER.warn("Failed to parse LLM response: " + response);
-            useFallbackGeneration("Invalid response format from LLM. Response: " + response.substring(0, Math.min(100, response.length())));
-
-        } catch (Exception e) {
-            LOGGER.error("Error generating villager with LLM: " + e.getMessage(), e);
-            useFallbackGeneration("Failed to connect to LLM: " + e.getMessage());
-        }
+            identityPending = false;
+            if (error != null) {
+                LOGGER.error("Error generating villager with LLM: " + error.getMessage());
+                this.llmGenerationFailed = true;
+                this.llmErrorMessage = "Failed to get identity from LLM: " + error.getMessage();
+                return;
+            }
+            this.name = identity.getName();
+            this.personality = identity.getPersonality();
+            this.identityChanged = true;
+            LOGGER.info("Generated villager via LLM: " + name + " - " + personality);
+        }));
     }
 
     /**
-     * Simple JSON value extractor
+     * Queue a state change from any thread. Commands run on the server thread
+     * at the start of the next tick (see {@link VillagerAgentManager#drainMailboxes}),
+     * so LLM callbacks never touch agent state concurrently with the tick.
      */
-    private String extractJsonValue(String json, String key) {
-        try {
-            String searchKey = "\"" + key + "\"";
-            int keyIndex = json.indexOf(searchKey);
-            if (keyIndex == -1) return null;
-
-            int colonIndex = json.indexOf(":", keyIndex);
-            if (colonIndex == -1) return null;
+    public void post(Consumer<VillagerAgentData> command) {
+        mailbox.add(command);
+    }
 
-            int startQuote = json.indexOf("\"", colonIndex);
-            if (startQuote == -1) return null;
+    /**
+     * Run every queued command. Server thread only.
+     * @return how many commands ran
+     */
+    public int drainMailbox() {
+        int count = 0;
+        Consumer<VillagerAgentData> command;
+        while ((command = mailbox.poll()) != null) {
+            try {
+                command.accept(this);
+            } catch (RuntimeException e) {
+                LOGGER.error("Error applying queued update for " + name, e);
+            }
+            count++;
+        }
+        return count;
+    }
 
-            int endQuote = json.indexOf("\"", startQuote + 1);
-            if (endQuote == -1) return null;
+    public int getMailboxSize() {
+        return mailbox.size();
+    }
 
-            return json.substring(startQuote + 1, endQuote);
-        } catch (Exception e) {
-            return null;
-        }
+    /**
+     * True once after the LLM identity replaced the placeholder, so the caller
+     * can refresh the entity's name tag.
+     */
+    public boolean consumeIdentityChanged() {
+        if (!identityChanged) return false;
+        identityChanged = false;
+        return true;
     }
 
     /**
@@ -268,6 +290,7 @@ public class VillagerAgentData {
         this.actionStartTime = System.currentTimeMillis();
     }
     public long getActionStartTime() { return actionStartTime; }
+    public Deque<VillagerAction> getQueuedActions() { return queuedActions; }
     public boolean hasLLMGenerationFailed() { return llmGenerationFailed; }
     public String getLLMErrorMessage() { return llmErrorMessage; }
     public long getLastRestockTime() { return lastRestockTime; }
@@ -279,6 +302,17 @@ public class VillagerAgentData {
     public boolean isOnFarmingCooldown() { return farmingCooldownTicks > 0; }
     public void tickFarmingCooldown() { if (farmingCooldownTicks > 0) farmingCooldownTicks--; }
     public void tickFarmingCooldown(int ticks) { farmingCooldownTicks = Math.max(0, farmingCooldownTicks - ticks); }
+    public long getFarmRevisitTick() { return farmRevisitTick; }
+    public BlockPos getFarmRevisitCenter() { return farmRevisitCenter; }
+    public boolean hasFarmRevisit() { return farmRevisitTick >= 0; }
+    public void setFarmRevisit(long tick, BlockPos center) {
+        this.farmRevisitTick = tick;
+        this.farmRevisitCenter = center;
+    }
+    public void clearFarmRevisit() {
+        this.farmRevisitTick = -1;
+        this.farmRevisitCenter = null;
+    }
     
     public void addMemory(String memory) {
         memories.add(memory);
@@ -303,6 +337,9 @@ public class VillagerAgentData {
     public void pruneExpiredConversations(long currentTick) {
         conversationHistory.removeIf(msg ->
                 currentTick - msg.getGameTick() > CONVERSATION_EXPIRY_TICKS);
+        if (!conversationSynopsis.isEmpty() && currentTick - synopsisTick > CONVERSATION_EXPIRY_TICKS) {
+            conversationSynopsis = "";
+        }
         while (conversationHistory.size() > MAX_CONVERSATION_ENTRIES) {
             conversationHistory.remove(0);
         }
@@ -376,8 +413,9 @@ public class VillagerAgentData {
 
     /**
      * Generate a chat response using LLM.
-     * Includes the full recent conversation history (within 1 game-day) so the
-     * villager can reference earlier exchanges when replying.
+     * The prompt carries the rolling synopsis of earlier conversation, the most
+     * recent lines word-for-word, and the memories most relevant to the
+     * player's message, all trimmed to the configured token budget.
      *
      * @param playerName    The name of the player talking to the villager
      * @param playerMessage The message from the player (null for greeting)
@@ -399,42 +437,46 @@ public class VillagerAgentData {
                 "You remember conversations from today. If the player refers to something said earlier, " +
                 "use the conversation history below to give a consistent, contextual reply.";
 
-        // ── Build user prompt with context ──
-        StringBuilder context = new StringBuilder();
-
-        // Recent memories (non-conversation observations)
-        if (!memories.isEmpty()) {
-            context.append("Recent memories: ");
-            int start = Math.max(0, memories.size() - 5);
-            for (int i = start; i < memories.size(); i++) {
-                context.append(memories.get(i)).append(". ");
-            }
-            context.append("\n");
-        }
-
-        // Conversation history from today
-        if (!conversationHistory.isEmpty()) {
-            context.append("Conversation history from today:\n");
-            for (TimestampedMessage msg : conversationHistory) {
-                context.append("- ").append(msg.getText()).append("\n");
-            }
-            context.append("\n");
-        }
-
         String userPrompt;
         if (playerMessage == null || playerMessage.isEmpty()) {
-            userPrompt = context + "A player named " + playerName + " approaches you. Greet them as a " + profession + ".";
+            userPrompt = "A player named " + playerName + " approaches you. Greet them as a " + profession + ".";
         } else {
-            userPrompt = context + "Now, player " + playerName + " says: \"" + playerMessage + "\". " +
+            userPrompt = "Now, player " + playerName + " says: \"" + playerMessage + "\". " +
                     "Respond in character. You may reference earlier parts of the conversation if relevant.";
         }
 
+        // Persona first (cacheable), today's context after it, the new line last
+        int contextBudget = ModConfig.LLM_PROMPT_TOKEN_BUDGET.get() - TokenEstimator.estimate(userPrompt);
+        LLMPrompt prompt = new LLMPrompt(systemPrompt, buildChatContext(playerMessage, contextBudget), userPrompt,
+                LLMPrompt.RequestClass.CHAT);
+
+        // Openers for a common persona are answered from the local reply cache
+        boolean cacheable = ChatReplyCache.isCacheable(playerMessage, !conversationHistory.isEmpty());
+        String cached = cacheable ? ChatReplyCache.get(profession, personality, playerMessage, name, playerName) : null;
+
+        CompletableFuture<String> reply;
+        if (cached != null) {
+            reply = CompletableFuture.completedFuture(cached);
+        } else {
+            reply = LLMService.queryLLMStrict(prompt)
+                    .thenApply(response -> {
+                        if (cacheable) {
+                            ChatReplyCache.put(profession, personality, playerMessage, name, playerName, response);
+                        }
+                        return response;
+                    })
+                    .exceptionally(LLMService::fallbackReply);
+        }
+
         final long tick = gameTick; // capture for lambda
-        return LLMService.queryLLM(systemPrompt, userPrompt)
+        return reply
                 .thenApply(response -> {
-                    // Store both sides of the exchange with the current game tick
-                    addConversation(playerName + ": " + (playerMessage != null ? playerMessage : "[greeting]"), tick);
-                    addConversation(name + ": " + response, tick);
+                    // Store both sides of the exchange with the current game tick, on the server thread
+                    post(agent -> {
+                        addConversation(playerName + ": " + (playerMessage != null ? playerMessage : "[greeting]"), tick);
+                        addConversation(name + ": " + response, tick);
+                        summarizeOlderConversation(tick);
+                    });
                     return response;
                 })
                 .exceptionally(e -> {
@@ -443,6 +485,80 @@ public class VillagerAgentData {
                 });
     }
 
+    /**
+     * Assemble the volatile context for a chat turn within {@code tokenBudget}.
+     */
+    public String buildChatContext(String playerMessage, int tokenBudget) {
+        PromptBuilder builder = new PromptBuilder("chat");
+
+        if (!conversationSynopsis.isEmpty()) {
+            builder.section("Summary of earlier conversation today:",
+                    Collections.singletonList(conversationSynopsis), 0.8);
+        }
+
+        // Recent memories, most relevant to what the player just said first
+        List<String> recentMemories = new ArrayList<>(
+                memories.subList(Math.max(0, memories.size() - CHAT_MEMORY_CANDIDATES), memories.size()));
+        if (!recentMemories.isEmpty()) {
+            builder.scoredSection("Recent memories:", recentMemories,
+                    PromptBuilder.scoreByOverlap(recentMemories, PromptBuilder.keywords(playerMessage)), 0.5);
+        }
+
+        // Conversation lines not yet folded into the synopsis (newest kept first)
+        List<String> history = new ArrayList<>();
+        for (TimestampedMessage msg : conversationHistory) {
+            history.add(msg.getText());
+        }
+        builder.section("Conversation history from today:", history, 1.0);
+
+        return builder.build(tokenBudget);
+    }
+
+    /**
+     * Fold conversation lines older than the verbatim window into the rolling
+     * synopsis. Runs in the background; at most one summary per villager is in
+     * flight, and the history is only trimmed once the summary has arrived.
+     * Server thread only; the result is applied through the mailbox.
+     */
+    private void summarizeOlderConversation(long gameTick) {
+        int verbatim = ModConfig.LLM_VERBATIM_CONVERSATION_LINES.get();
+        int olderCount = conversationHistory.size() - verbatim;
+        if (olderCount < SUMMARY_MIN_NEW_LINES) return;
+        if (!summaryInFlight.compareAndSet(false, true)) return;
+
+        final List<TimestampedMessage> older = new ArrayList<>(conversationHistory.subList(0, olderCount));
+        StringBuilder transcript = new StringBuilder();
+        if (!conversationSynopsis.isEmpty()) {
+            transcript.append("Summary so far: ").append(conversationSynopsis).append("\n\n");
+        }
+        transcript.append("New lines:\n");
+        for (TimestampedMessage msg : older) {
+            transcript.append(msg.getText()).append("\n");
+        }
+
+        String systemPrompt = "You maintain the memory of " + name + ", a " + profession + " villager. " +
+                "Merge the summary so far and the new conversation lines into one short summary (at most 3 sentences) " +
+                "written in third person. Keep names, promises, requests and facts the villager should remember. " +
+                "Respond with the summary only.";
+
+        LLMService.queryLLMStrict(systemPrompt, transcript.toString()).whenComplete((summary, error) -> post(agent -> {
+            try {
+                if (error == null && summary != null && !summary.trim().isEmpty()) {
+                    conversationSynopsis = summary.trim();
+                    synopsisTick = gameTick;
+                    conversationHistory.removeAll(older);
+                    LOGGER.debug(name + " folded " + older.size() + " conversation lines into synopsis");
+                } else if (error != null) {
+                    LOGGER.debug("Conversation summary for " + name + " failed: " + error.getMessage());
+                }
+            } finally {
+                summaryInFlight.set(false);
+            }
+        }));
+    }
+
+    public String getConversationSynopsis() { return conversationSynopsis; }
+
     // NBT serialization for saving/loading
     public CompoundNBT serializeNBT() {
         CompoundNBT nbt = new CompoundNBT();
@@ -472,6 +588,8 @@ public class VillagerAgentData {
             conversationsNBT.add(convNBT);
         }
         nbt.put("Conversations", conversationsNBT);
+        nbt.putString("Synopsis", conversationSynopsis);
+        nbt.putLong("SynopsisTick", synopsisTick);
 
         // Save inventory
         nbt.put("Inventory", inventory.serializeNBT());
@@ -480,6 +598,7 @@ public class VillagerAgentData {
     }
 
     public void deserializeNBT(CompoundNBT nbt) {
+        this.identityPending = false;
         this.villagerId = nbt.getUUID("VillagerId");
         this.name = nbt.getString("Name");
         this.profession = nbt.contains("Profession") ? nbt.getString("Profession") : "Villager";
@@ -513,6 +632,9 @@ public class VillagerAgentData {
             }
         }
 
+        this.conversationSynopsis = nbt.getString("Synopsis");
+        this.synopsisTick = nbt.getLong("SynopsisTick");
+
         // Load inventory
         if (nbt.contains("Inventory")) {
             inventory.deserializeNBT(nbt.getCompound("Inventory"));
@@ -1,12 +1,15 @@
 package com.github.AaronAA0721.villageragent.ai;
 
 import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.ai.brain.memory.MemoryModuleType;
 import net.minecraft.entity.merchant.villager.VillagerEntity;
 import net.minecraft.pathfinding.Path;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.GlobalPos;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
 import net.minecraft.world.server.ServerWorld;
 import org.apache.logging.log4j.LogManager;
@@ -14,6 +17,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * Manages all AI villager agents in the world
@@ -41,8 +45,18 @@ public class VillagerAgentManager {
      */
     private static final int FARMING_COOLDOWN_MIN_TICKS = 200;
     private static final int FARMING_COOLDOWN_MAX_TICKS = 400;
+
+    /** Without an assigned plot, a farmer's field is the crops within this distance (squared) of where it farmed. */
+    private static final double FARM_FIELD_RADIUS_SQ = 16 * 16;
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Map<UUID, VillagerAgentData> agents = new ConcurrentHashMap<>();
+
+    /**
+     * Removed agents whose LLM replies may still arrive, so queued commands
+     * (e.g. returning a player's trade items) still run. Value is the removal time.
+     */
+    private static final Map<VillagerAgentData, Long> retiredAgents = new ConcurrentHashMap<>();
+    private static final long RETIRED_MAILBOX_TTL_MS = 300_000L;
     
     /**
      * Get or create agent data for a villager
@@ -74,10 +88,67 @@ public class VillagerAgentManager {
      * Remove agent data (when villager dies or is removed)
      */
     public static void removeAgent(UUID villagerId) {
-        agents.remove(villagerId);
+        VillagerAgentData removed = agents.remove(villagerId);
+        if (removed != null) {
+            removed.drainMailbox();
+            retiredAgents.put(removed, System.currentTimeMillis());
+        }
+        AgentPlanner.forget(villagerId);
+        AgentTickProfiler.forget(villagerId);
+        FarmDispatcher.forget(villagerId);
         LOGGER.info("Removed AI agent: " + villagerId);
     }
     
+    /**
+     * Register gauges for agent counts and the depth of every queue between
+     * the LLM threads and the server thread. Called once during mod setup.
+     */
+    public static void registerMetrics() {
+        MetricsRegistry.gauge("agents", agents::size);
+        MetricsRegistry.gauge("agents_retired", retiredAgents::size);
+        MetricsRegistry.gauge("agent_mailbox_depth", () -> {
+            long depth = 0;
+            for (VillagerAgentData agent : agents.values()) depth += agent.getMailboxSize();
+            return depth;
+        });
+        MetricsRegistry.gauge("llm_executor_queue_depth", LLMService::getQueuedRequests);
+        MetricsRegistry.gauge("llm_executor_active", LLMService::getActiveRequests);
+        MetricsRegistry.gauge("planner_in_flight", AgentPlanner::getInFlightCount);
+        MetricsRegistry.gauge("farm_reservations", FarmDispatcher::getReservationCount);
+        MetricsRegistry.gauge("farm_plots", FarmDispatcher::getPlotCount);
+        MetricsRegistry.gauge("farm_forecast_crops", CropForecast::getRecordCount);
+        MetricsRegistry.gauge("path_pending", PathService::getPendingCount);
+        MetricsRegistry.gauge("nav_graph_nodes", VillageNavGraph::getNodeCount);
+        MetricsRegistry.gauge("nav_graph_links", VillageNavGraph::getLinkCount);
+        MetricsRegistry.gauge("chat_cache_entries", ChatReplyCache::size);
+        MetricsRegistry.gauge("agents_throttled", AgentTickProfiler::getThrottledCount);
+    }
+
+    /**
+     * Apply queued asynchronous results to every agent. The server thread is
+     * the only writer of agent state; call once at the start of each server tick.
+     */
+    public static void drainMailboxes() {
+        int applied = 0;
+        for (VillagerAgentData agent : agents.values()) {
+            applied += agent.drainMailbox();
+        }
+        if (!retiredAgents.isEmpty()) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<VillagerAgentData, Long>> it = retiredAgents.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<VillagerAgentData, Long> entry = it.next();
+                applied += entry.getKey().drainMailbox();
+                if (now - entry.getValue() > RETIRED_MAILBOX_TTL_MS) {
+                    it.remove();
+                }
+            }
+        }
+        if (applied > 0) {
+            MetricsRegistry.add("agent_mailbox_commands_total", applied);
+        }
+    }
+
     /**
      * Update all agents in the world (slow tick — goals, restocking, etc.)
      */
@@ -92,8 +163,14 @@ public class VillagerAgentManager {
 
             // Only update periodically to avoid performance issues
             if (currentTime - agent.getLastThinkTime() >= thinkInterval) {
+                // This runs once per dimension; only the villager's own world may count a throttle skip
+                VillagerEntity villager = findVillagerEntity(world, agent.getVillagerId());
+                if (villager == null) continue;
+                if (AgentTickProfiler.shouldSkip(agent)) continue;
                 agent.setLastThinkTime(currentTime);
-                updateAgent(world, agent);
+                long start = System.nanoTime();
+                updateAgent(world, villager, agent);
+                AgentTickProfiler.record(agent, AgentTickProfiler.Cost.THINK, start);
             }
         }
     }
@@ -102,6 +179,11 @@ public class VillagerAgentManager {
      * Fast tick for farming — runs every tick so walking/acting is responsive.
      * Separated from the slow AI think loop to avoid 100-tick delays between
      * walk checks and action execution.
+     *
+     * Runs in two phases. Walking, acting and cooldowns run in place, and
+     * farmers that need to look for work queue a {@link FarmScan}; the scans
+     * then run together (in parallel when enabled) while no blocks change,
+     * and their results are applied one farmer at a time on this thread.
      */
     public static void tickFarming(World world) {
         if (!ModConfig.ENABLE_AI_AGENTS.get()) return;
@@ -110,6 +192,10 @@ public class VillagerAgentManager {
 
         long currentTime = world.getGameTime();
         ServerWorld serverWorld = (ServerWorld) world;
+        List<FarmScan> scans = new ArrayList<>();
+        FarmDispatcher.tick(currentTime);
+        CropForecast.tick(currentTime);
+        VillageNavGraph.tick(serverWorld);
 
         for (VillagerAgentData agent : agents.values()) {
             String profession = agent.getProfession();
@@ -129,8 +215,26 @@ public class VillagerAgentManager {
 
             VillagerEntity villager = findVillagerEntity(world, agent.getVillagerId());
             if (villager == null) continue;
+            // After the lookup: this runs once per dimension, and only the villager's own world may count a skip
+            if (AgentTickProfiler.shouldSkip(agent)) continue;
 
-            performFarmerActions(villager, serverWorld, agent);
+            long start = System.nanoTime();
+            FarmScan scan = performFarmerActions(villager, serverWorld, agent);
+            AgentTickProfiler.record(agent, AgentTickProfiler.Cost.FARMING, start);
+            if (scan != null) scans.add(scan);
+        }
+
+        // Scans read the live world, so this pass's harvests and replants must be in it
+        BlockChangeBuffer.flush(serverWorld);
+        if (scans.isEmpty()) return;
+        FarmScan.runAll(scans);
+        for (FarmScan scan : scans) {
+            long start = System.nanoTime();
+            applyFarmScan(serverWorld, scan);
+            AgentTickProfiler.record(scan.agent, AgentTickProfiler.Cost.FARMING, start);
+            // Scan time is worker CPU rather than server thread time, but still part of the farmer's cost
+            AgentTickProfiler.recordNanos(scan.agent, AgentTickProfiler.Cost.SCAN, scan.scanNanos);
+            AgentTickProfiler.recordNanos(scan.agent, AgentTickProfiler.Cost.FARMING, scan.scanNanos);
         }
     }
 
@@ -138,22 +242,36 @@ public class VillagerAgentManager {
      * Update a single agent's AI (slow tick — goals, restocking, etc.)
      * Farming is handled separately by tickFarming().
      */
-    private static void updateAgent(World world, VillagerAgentData agent) {
-        // Find the actual villager entity
-        VillagerEntity villager = findVillagerEntity(world, agent.getVillagerId());
-        if (villager == null) {
-            return; // Villager not loaded or doesn't exist
+    private static void updateAgent(World world, VillagerEntity villager, VillagerAgentData agent) {
+        // The LLM identity may have arrived after the villager joined the world
+        if (agent.consumeIdentityChanged()) {
+            villager.setCustomName(new StringTextComponent(agent.getName()));
         }
 
         // Check if villager is at their job block for restocking
         checkJobBlockRestock(villager, agent);
 
+        think(agent, world.getGameTime());
+    }
+
+    /**
+     * The part of the slow tick that needs no entity: goals, planning and
+     * goal generation. The simulation harness runs agents through here too.
+     */
+    public static void think(VillagerAgentData agent, long gameTime) {
         // Process current goals
-        processGoals(villager, agent);
+        processGoals(agent);
+
+        // Ask the LLM for the next steps while the villager has nothing under way;
+        // the plan is applied through the agent's mailbox when it arrives
+        if (AgentPlanner.isEnabled() && AgentPlanner.canPlanFor(agent)
+                && agent.getCurrentAction() == null && !agent.isInFarmingState()) {
+            AgentPlanner.requestPlan(agent, gameTime);
+        }
 
         // Decide on new actions based on AI
         if (agent.getGoals().isEmpty() || shouldGenerateNewGoals(agent)) {
-            generateNewGoals(villager, agent);
+            generateNewGoals(agent);
         }
     }
 
@@ -164,92 +282,151 @@ public class VillagerAgentManager {
      * 1. **Walking** — an action is in progress (walking to a block). Continue it.
      * 2. **Cooldown** — the villager just finished a farming session and is resting.
      *    Tick down the cooldown; do nothing else.
-     * 3. **Farming** — the villager is actively working an area. Scan 360° for the
-     *    next block to harvest/plant. If nothing left → exit + start cooldown.
-     * 4. **Idle** — the villager is wandering. Every ~10 s on average (random roll)
-     *    it glances at its forward cone. If it spots work → enter farming state.
+     * 3. **Farming** — the villager is actively working an area. Scan 360° and
+     *    plan a route over everything to harvest/plant; the route is walked in
+     *    state 1. If nothing left → exit + start cooldown.
+     * 4. **Idle** — the villager is wandering. If a revisit is scheduled it waits
+     *    for it, then harvests the crops predicted mature. Otherwise, every ~10 s
+     *    on average (random roll) it glances at its forward cone. If it spots
+     *    work → enter farming state.
+     *
+     * States 3 and 4 only return the scan to run; {@link #applyFarmScan}
+     * acts on what it finds.
      */
-    private static void performFarmerActions(VillagerEntity villager, ServerWorld world, VillagerAgentData agent) {
+    private static FarmScan performFarmerActions(VillagerEntity villager, ServerWorld world, VillagerAgentData agent) {
         // ── 1. Walking to a target block — continue the action ──
         VillagerAction current = agent.getCurrentAction();
         if (current != null && isFarmingAction(current)) {
             continueFarmingAction(villager, world, agent, current);
-            return;
+            return null;
         }
 
         // ── 2. Cooldown after a farming session ──
         if (agent.isOnFarmingCooldown()) {
             agent.tickFarmingCooldown(FARMING_TICK_INTERVAL);
-            return; // resting — do nothing
+            return null; // resting — do nothing
         }
 
         // ── 3. In farming state — scan 360° for the next reachable block ──
         if (agent.isInFarmingState()) {
-            BlockPos villagerPos = villager.blockPosition();
-
-            // Priority 1: harvest mature crops (try nearest reachable)
-            BlockPos cropTarget = findFirstReachable(villager,
-                    FarmingAction.findMatureCropsSorted(world, villagerPos));
-            if (cropTarget != null) {
-                startFarmingAction(villager, agent, VillagerAction.ActionType.HARVEST,
-                        "Harvesting area", cropTarget);
-                return;
-            }
+            return newFarmScan(villager, world, agent, true);
+        }
 
-            // Priority 2: plant seeds on empty farmland
-            if (FarmingAction.hasSeeds(agent)) {
-                BlockPos farmlandTarget = findFirstReachable(villager,
-                        FarmingAction.findEmptyFarmlandSorted(world, villagerPos));
-                if (farmlandTarget != null) {
-                    startFarmingAction(villager, agent, VillagerAction.ActionType.GROW,
-                            "Planting area", farmlandTarget);
-                    return;
-                }
+        // ── 4. Idle — wait for a scheduled revisit, or glance at forward cone by chance ──
+        if (agent.hasFarmRevisit()) {
+            if (world.getGameTime() >= agent.getFarmRevisitTick()) {
+                startFarmRevisit(world, villager, agent);
             }
-
-            // Nothing reachable — exit farming state, start cooldown
-            exitFarmingState(agent);
-            return;
+            return null;
         }
-
-        // ── 4. Idle — random chance to glance at forward cone ──
         if (RANDOM.nextDouble() > FARMING_SCAN_CHANCE) {
-            return; // not looking this tick
+            return null; // not looking this tick
         }
+        return newFarmScan(villager, world, agent, false);
+    }
 
-        BlockPos villagerPos = villager.blockPosition();
-        float headYaw = villager.yHeadRot;
+    private static FarmScan newFarmScan(VillagerEntity villager, ServerWorld world, VillagerAgentData agent, boolean full) {
+        ChunkSectionSnapshot blocks = ChunkSectionSnapshot.capture(world, villager.blockPosition(), FarmingAction.SCAN_RADIUS);
+        return new FarmScan(agent, villager, blocks, full, FarmingAction.hasSeeds(agent));
+    }
 
-        // Check forward cone for anything to do
-        BlockPos cropTarget = FarmingAction.findNearestMatureCrop(world, villagerPos, headYaw);
-        if (cropTarget != null) {
-            enterFarmingState(agent);
-            startFarmingAction(villager, agent, VillagerAction.ActionType.HARVEST,
-                    "Noticed crops — starting harvest", cropTarget);
+    /**
+     * Act on a finished scan: plan a route and start walking, or update the
+     * farming state. Targets reserved by other farmers are skipped, and the
+     * farmer's own plot is tried first.
+     */
+    private static void applyFarmScan(ServerWorld world, FarmScan scan) {
+        VillagerEntity villager = scan.villager;
+        VillagerAgentData agent = scan.agent;
+        if (!villager.isAlive() || agent.getCurrentAction() != null) return;
+
+        if (scan.full) {
+            CropForecast.record(world, scan.growing);
+            List<BlockPos> crops = FarmDispatcher.prioritise(world, villager, agent, scan.crops, true);
+            List<BlockPos> farmland = FarmDispatcher.prioritise(world, villager, agent, scan.farmland, false);
+            if (startFarmingRoute(world, villager, agent, crops, farmland)) return;
+
+            // Nothing to do — exit farming state, start cooldown
+            exitFarmingState(agent);
+            scheduleFarmRevisit(world, villager, agent);
             return;
         }
 
-        if (FarmingAction.hasSeeds(agent)) {
-            BlockPos farmlandTarget = FarmingAction.findNearestEmptyFarmland(world, villagerPos, headYaw);
-            if (farmlandTarget != null) {
-                enterFarmingState(agent);
-                startFarmingAction(villager, agent, VillagerAction.ActionType.GROW,
-                        "Noticed farmland — starting planting", farmlandTarget);
-                return;
-            }
+        // Idle glance at the forward cone
+        UUID farmerId = agent.getVillagerId();
+        if (scan.coneCrop != null && FarmDispatcher.isAvailable(world, scan.coneCrop, farmerId)) {
+            enterFarmingState(agent);
+            startFarmingAction(villager, agent, VillagerAction.ActionType.HARVEST,
+                    "Noticed crops — starting harvest", scan.coneCrop);
+        } else if (scan.coneFarmland != null && FarmDispatcher.isAvailable(world, scan.coneFarmland, farmerId)) {
+            enterFarmingState(agent);
+            startFarmingAction(villager, agent, VillagerAction.ActionType.GROW,
+                    "Noticed farmland — starting planting", scan.coneFarmland);
         }
     }
 
+    /**
+     * After a session, book the farmer's return for when enough of its field
+     * is predicted mature. Without any known crops nothing is booked and the
+     * farmer goes back to glancing around.
+     */
+    private static void scheduleFarmRevisit(ServerWorld world, VillagerEntity villager, VillagerAgentData agent) {
+        if (!ModConfig.FARM_FORECAST_ENABLED.get()) return;
+        BlockPos center = villager.blockPosition();
+        long tick = CropForecast.revisitTick(world, farmField(agent, center),
+                ModConfig.FARM_REVISIT_MATURE_FRACTION.get());
+        if (tick < 0) return;
+        agent.setFarmRevisit(tick, center);
+        MetricsRegistry.increment("farm_revisits_scheduled_total");
+        LOGGER.debug(agent.getName() + " will revisit its field in " + (tick - world.getGameTime()) + " ticks");
+    }
+
+    /**
+     * Scheduled revisit is due: route straight to the crops predicted mature,
+     * without scanning. If none turn out ready, the farming state falls back
+     * to a normal scan on its next run.
+     */
+    private static void startFarmRevisit(ServerWorld world, VillagerEntity villager, VillagerAgentData agent) {
+        Predicate<BlockPos> field = farmField(agent, agent.getFarmRevisitCenter());
+        agent.clearFarmRevisit();
+        enterFarmingState(agent);
+        MetricsRegistry.increment("farm_revisits_total");
+
+        List<BlockPos> due = CropForecast.dueCrops(world, field);
+        if (due.isEmpty()) return;
+        List<BlockPos> crops = FarmDispatcher.prioritise(world, villager, agent, due, true);
+        startFarmingRoute(world, villager, agent, crops, Collections.emptyList());
+    }
+
+    /** The farmer's field: its assigned plot, or the crops around where it last farmed. */
+    private static Predicate<BlockPos> farmField(VillagerAgentData agent, BlockPos center) {
+        FarmDispatcher.Plot plot = FarmDispatcher.getAssignedPlot(agent.getVillagerId());
+        if (plot != null) return crop -> plot.contains(crop.below());
+        return crop -> crop.distSqr(center) <= FARM_FIELD_RADIUS_SQ;
+    }
+
     /** Enter farming state — the villager commits to working the area. */
     private static void enterFarmingState(VillagerAgentData agent) {
         agent.setInFarmingState(true);
+        agent.clearFarmRevisit();
         agent.setCurrentActivity("farming");
         LOGGER.debug(agent.getName() + " entered farming state");
     }
 
+    /**
+     * Put a farmer into farming state from outside the state machine (e.g. an
+     * LLM plan). No-op while it is already farming or resting.
+     */
+    public static void startFarmingSession(VillagerAgentData agent) {
+        if (agent.isInFarmingState() || agent.isOnFarmingCooldown()) return;
+        if (agent.getCurrentAction() != null && isFarmingAction(agent.getCurrentAction())) return;
+        enterFarmingState(agent);
+    }
+
     /** Exit farming state and start a cooldown before the next scan cycle. */
     private static void exitFarmingState(VillagerAgentData agent) {
         agent.setInFarmingState(false);
+        agent.getQueuedActions().clear();
         int cooldown = FARMING_COOLDOWN_MIN_TICKS
                 + RANDOM.nextInt(FARMING_COOLDOWN_MAX_TICKS - FARMING_COOLDOWN_MIN_TICKS + 1);
         agent.setFarmingCooldownTicks(cooldown);
@@ -257,24 +434,127 @@ public class VillagerAgentManager {
         LOGGER.debug(agent.getName() + " finished farming — cooldown " + cooldown + " ticks");
     }
 
+    private static boolean isFarmingAction(VillagerAction action) {
+        return action.getActionType() == VillagerAction.ActionType.HARVEST
+            || action.getActionType() == VillagerAction.ActionType.GROW;
+    }
+
     /**
-     * Given a list of candidate BlockPos (sorted nearest-first), return the first
-     * one the villager can actually path to, or null if none are reachable.
-     * Uses Minecraft's built-in A* pathfinder — cheap for short distances.
+     * Plan a farming session: collect the crops to harvest and farmland to
+     * plant (up to farm_route_max_stops, own plot first) and search for a
+     * path to the nearest reachable one. The stops are held while the
+     * search runs on a worker thread; {@link #onRoutePath} starts the route
+     * when the path comes back.
+     *
+     * When the nearest stop is a long trip away, the village's waypoint
+     * graph gives the way there instead, and the route starts at once.
+     *
+     * @return false if there was nothing to do
      */
-    private static BlockPos findFirstReachable(VillagerEntity villager, List<BlockPos> candidates) {
-        for (BlockPos pos : candidates) {
-            Path path = villager.getNavigation().createPath(pos, 1);
-            if (path != null) {
-                return pos;
+    private static boolean startFarmingRoute(ServerWorld world, VillagerEntity villager, VillagerAgentData agent,
+                                             List<BlockPos> crops, List<BlockPos> farmland) {
+        int maxStops = ModConfig.FARM_ROUTE_MAX_STOPS.get();
+        Map<BlockPos, VillagerAction.ActionType> stops = new LinkedHashMap<>();
+        for (BlockPos pos : crops) {
+            if (stops.size() >= maxStops) break;
+            stops.put(pos, VillagerAction.ActionType.HARVEST);
+        }
+        for (BlockPos pos : farmland) {
+            if (stops.size() >= maxStops) break;
+            stops.putIfAbsent(pos, VillagerAction.ActionType.GROW);
+        }
+        if (stops.isEmpty()) return false;
+
+        BlockPos nearest = null;
+        BlockPos villagerPos = villager.blockPosition();
+        for (BlockPos pos : stops.keySet()) {
+            if (nearest == null || villagerPos.distSqr(pos) < villagerPos.distSqr(nearest)) nearest = pos;
+        }
+        int longTrip = ModConfig.NAV_GRAPH_LONG_TRIP_DISTANCE.get();
+        if (villagerPos.distSqr(nearest) > (double) longTrip * longTrip) {
+            List<BlockPos> waypoints = VillageNavGraph.route(world, villager, nearest);
+            if (waypoints != null && !waypoints.isEmpty()) {
+                startRoute(villager, agent, nearest, stops, waypoints);
+                return true;
             }
         }
-        return null;
+
+        // Hold the stops while the path search runs, so farming waits for it instead of scanning again
+        Map.Entry<BlockPos, VillagerAction.ActionType> firstStop = stops.entrySet().iterator().next();
+        VillagerAction searching = newFarmingAction(firstStop.getValue(), firstStop.getKey());
+        searching.getHeldStops().addAll(stops.keySet());
+        agent.setCurrentAction(searching);
+        for (BlockPos pos : stops.keySet()) {
+            FarmDispatcher.reserve(world, pos, agent.getVillagerId());
+        }
+        PathService.request(villager, agent, stops.keySet(), 1,
+                (v, a, path) -> onRoutePath(v, a, searching, stops, path));
+        return true;
     }
 
-    private static boolean isFarmingAction(VillagerAction action) {
-        return action.getActionType() == VillagerAction.ActionType.HARVEST
-            || action.getActionType() == VillagerAction.ActionType.GROW;
+    /**
+     * The path search for a session came back: order the stops into a short
+     * tour starting at the one the path reaches, and start walking it. If
+     * none is reachable the session ends.
+     */
+    private static void onRoutePath(VillagerEntity villager, VillagerAgentData agent, VillagerAction searching,
+                                    Map<BlockPos, VillagerAction.ActionType> stops, Path path) {
+        if (agent.getCurrentAction() != searching) return; // superseded while searching
+        agent.setCurrentAction(null);
+        ServerWorld world = (ServerWorld) villager.level;
+
+        if (path == null || !path.canReach() || !stops.containsKey(path.getTarget())) {
+            abandonSearch(world, villager, agent, searching);
+            return;
+        }
+
+        startRoute(villager, agent, path.getTarget(), stops, Collections.emptyList());
+    }
+
+    /**
+     * No route came of a session's path search: release the stops it held
+     * and end the session.
+     */
+    private static void abandonSearch(ServerWorld world, VillagerEntity villager, VillagerAgentData agent,
+                                      VillagerAction searching) {
+        for (BlockPos pos : searching.getHeldStops()) {
+            FarmDispatcher.release(world, pos, agent.getVillagerId());
+        }
+        exitFarmingState(agent);
+        scheduleFarmRevisit(world, villager, agent);
+    }
+
+    /**
+     * Order the stops into a short tour starting at {@code first}, queue
+     * them and start walking, through {@code waypoints} if the first stop
+     * is a long trip away.
+     */
+    private static void startRoute(VillagerEntity villager, VillagerAgentData agent, BlockPos first,
+                                   Map<BlockPos, VillagerAction.ActionType> stops, List<BlockPos> waypoints) {
+        List<BlockPos> rest = new ArrayList<>(stops.keySet());
+        rest.remove(first);
+        List<BlockPos> route = FarmRoute.plan(first, rest);
+
+        Deque<VillagerAction> queue = agent.getQueuedActions();
+        queue.clear();
+        for (BlockPos pos : route) {
+            queue.add(newFarmingAction(stops.get(pos), pos));
+        }
+        VillagerAction action = newFarmingAction(stops.get(first), first);
+        action.getWaypoints().addAll(waypoints);
+        beginFarmingAction(villager, agent, action);
+
+        MetricsRegistry.increment("farm_routes_total");
+        MetricsRegistry.add("farm_route_stops_total", queue.size() + 1);
+        LOGGER.debug(String.format("%s planned a %d-stop farming route (%.1f blocks)",
+                agent.getName(), queue.size() + 1, FarmRoute.length(first, route)));
+    }
+
+    private static VillagerAction newFarmingAction(VillagerAction.ActionType type, BlockPos target) {
+        VillagerAction action = new VillagerAction(type,
+                type == VillagerAction.ActionType.HARVEST ? "Harvesting area" : "Planting area");
+        action.setTargetBlockPos(target);
+        return action;
     }
 
     /**
@@ -284,27 +564,93 @@ public class VillagerAgentManager {
                                             VillagerAction.ActionType type, String desc, BlockPos target) {
         VillagerAction action = new VillagerAction(type, desc);
         action.setTargetBlockPos(target);
+        beginFarmingAction(villager, agent, action);
+    }
+
+    /**
+     * Make {@code action} current, reserve its target and start walking.
+     * With brain walking the path is computed later by the brain, so this
+     * reports true and an unreachable target shows up in
+     * {@link #continueFarmingAction}.
+     * @return whether the navigator found a path to the target
+     */
+    private static boolean beginFarmingAction(VillagerEntity villager, VillagerAgentData agent, VillagerAction action) {
+        BlockPos target = action.getTargetBlockPos();
+        long gameTime = villager.level.getGameTime();
+        FarmDispatcher.reserve(villager.level, target, agent.getVillagerId());
         action.setPhase(VillagerAction.ActionPhase.WALKING);
+        action.setWalkStartTick(gameTime);
         agent.setCurrentAction(action);
 
         // Keep "farming" as the activity while in farming state
         if (!agent.isInFarmingState()) {
-            agent.setCurrentActivity(type == VillagerAction.ActionType.HARVEST ? "harvesting" : "planting");
+            agent.setCurrentActivity(action.getActionType() == VillagerAction.ActionType.HARVEST ? "harvesting" : "planting");
         }
 
-        // Tell the villager to walk toward the target block
-        villager.getNavigation().moveTo(
-                target.getX() + 0.5, target.getY(), target.getZ() + 0.5, 0.6);
+        LOGGER.debug(agent.getName() + " [" + action.getDescription() + "] — walking to " + target);
 
-        LOGGER.debug(agent.getName() + " [" + desc + "] — walking to " + target);
+        // Hand the target to the brain's walk task, or steer the navigator directly
+        if (ModConfig.FARM_BRAIN_WALKING.get()) {
+            FarmingWalkTask.walkTo(villager, action);
+            return true;
+        }
+        BlockPos walkTarget = action.getWalkTarget();
+        long pathStart = System.nanoTime();
+        boolean moving = villager.getNavigation().moveTo(
+                walkTarget.getX() + 0.5, walkTarget.getY(), walkTarget.getZ() + 0.5, 0.6);
+        AgentTickProfiler.record(agent, AgentTickProfiler.Cost.PATHFIND, pathStart);
+        return moving;
+    }
+
+    /**
+     * Start the next stop of the farmer's route. Stops whose block no longer
+     * needs work, or that the navigator cannot reach, are dropped.
+     */
+    private static void advanceRoute(VillagerEntity villager, ServerWorld world, VillagerAgentData agent) {
+        Deque<VillagerAction> queue = agent.getQueuedActions();
+        VillagerAction next;
+        while ((next = queue.poll()) != null) {
+            if (stillNeedsWork(world, next) && beginFarmingAction(villager, agent, next)) return;
+            agent.setCurrentAction(null);
+            FarmDispatcher.release(world, next.getTargetBlockPos(), agent.getVillagerId());
+            MetricsRegistry.increment("farm_route_stops_skipped_total");
+        }
+    }
+
+    /**
+     * Work every queued stop the villager can already reach from where it
+     * stands, so neighbouring crops are done in one visit.
+     */
+    private static void workQueuedInReach(VillagerEntity villager, ServerWorld world, VillagerAgentData agent) {
+        BlockPos villagerPos = villager.blockPosition();
+        Iterator<VillagerAction> it = agent.getQueuedActions().iterator();
+        while (it.hasNext()) {
+            VillagerAction queued = it.next();
+            BlockPos target = queued.getTargetBlockPos();
+            if (villagerPos.distSqr(target) > FarmingAction.INTERACT_RANGE_SQ) continue;
+            it.remove();
+            queued.setPhase(VillagerAction.ActionPhase.ACTING);
+            performFarmingActionAtBlock(villager, world, agent, queued, target);
+            FarmDispatcher.release(world, target, agent.getVillagerId());
+            MetricsRegistry.increment("farm_route_stops_in_reach_total");
+        }
+    }
+
+    private static boolean stillNeedsWork(ServerWorld world, VillagerAction action) {
+        BlockPos target = action.getTargetBlockPos();
+        IBlockReader blocks = BlockChangeBuffer.view(world);
+        return action.getActionType() == VillagerAction.ActionType.HARVEST
+                ? FarmingAction.isMatureCrop(blocks, target)
+                : FarmingAction.isEmptyFarmland(blocks, target);
     }
 
     /**
      * Continue an in-progress farming action: check distance, act or keep walking.
      *
-     * Vanilla villager brain activities (WORK, IDLE, MEET, etc.) continuously
-     * issue their own navigation commands that override ours.  To prevent the
-     * villager from wandering away mid-farm we:
+     * Walking is normally left to {@link FarmingWalkTask}, which holds the
+     * villager's brain walk target. With farm_brain_walking off, vanilla brain
+     * activities (WORK, IDLE, MEET, etc.) issue their own navigation commands
+     * that override ours, so to keep the villager from wandering away we:
      *   1. Stop the current vanilla navigation path every call.
      *   2. Re-issue our own moveTo every call (every FARMING_TICK_INTERVAL ticks).
      */
@@ -316,34 +662,72 @@ public class VillagerAgentManager {
             return;
         }
 
+        // Waiting for the route's path search to come back
+        if (action.getPhase() == VillagerAction.ActionPhase.SEARCHING) {
+            action.incrementStuckTicks();
+            if (action.getStuckTicks() > FarmingAction.STUCK_TIMEOUT_TICKS) {
+                LOGGER.debug(agent.getName() + " gave up waiting for a route path");
+                agent.setCurrentAction(null);
+                abandonSearch(world, villager, agent, action);
+            }
+            return;
+        }
+
         BlockPos villagerPos = villager.blockPosition();
         double distSq = villagerPos.distSqr(target);
+        boolean brainWalking = ModConfig.FARM_BRAIN_WALKING.get();
+
+        // On a long trip: past a waypoint, head for the next one with a fresh stuck timer
+        BlockPos waypoint = action.getWaypoints().peek();
+        if (waypoint != null && villagerPos.distSqr(waypoint) <= VillageNavGraph.WAYPOINT_REACHED_SQ) {
+            action.getWaypoints().poll();
+            action.resetStuckTicks();
+            action.setWalkStartTick(world.getGameTime());
+            if (brainWalking) FarmingWalkTask.walkTo(villager, action);
+        }
 
         // Check if we've arrived (within 1 block)
         if (distSq <= FarmingAction.INTERACT_RANGE_SQ) {
             action.setPhase(VillagerAction.ActionPhase.ACTING);
             performFarmingActionAtBlock(villager, world, agent, action, target);
             agent.setCurrentAction(null);
+            FarmDispatcher.release(world, target, agent.getVillagerId());
+            workQueuedInReach(villager, world, agent);
+            advanceRoute(villager, world, agent);
             return;
         }
 
-        // Still walking — check if stuck
+        // Still walking — check if stuck, or if the brain's pathfinder gave up
         action.incrementStuckTicks();
-        if (action.getStuckTicks() > FarmingAction.STUCK_TIMEOUT_TICKS) {
+        if (action.getStuckTicks() > FarmingAction.STUCK_TIMEOUT_TICKS
+                || (brainWalking && FarmingWalkTask.isUnreachable(villager, action))) {
             LOGGER.debug(agent.getName() + " gave up reaching " + target + " (stuck)");
             agent.setCurrentAction(null);
-            if (!agent.isInFarmingState()) {
+            FarmDispatcher.release(world, target, agent.getVillagerId());
+            advanceRoute(villager, world, agent);
+            if (agent.getCurrentAction() == null && !agent.isInFarmingState()) {
                 agent.setCurrentActivity("idle");
             }
             return;
         }
 
+        FarmDispatcher.reserve(world, target, agent.getVillagerId());
+        for (VillagerAction queued : agent.getQueuedActions()) {
+            FarmDispatcher.reserve(world, queued.getTargetBlockPos(), agent.getVillagerId());
+        }
+
+        // The brain's FarmingWalkTask keeps the walk target; vanilla repaths only when needed
+        if (brainWalking) return;
+
         // Cancel whatever vanilla AI decided to do, then re-assert our path.
         // This runs every FARMING_TICK_INTERVAL (3) ticks — fast enough to
         // override vanilla brain tasks without visible jitter.
+        BlockPos walkTarget = action.getWalkTarget();
+        long pathStart = System.nanoTime();
         villager.getNavigation().stop();
         villager.getNavigation().moveTo(
-                target.getX() + 0.5, target.getY(), target.getZ() + 0.5, 0.6);
+                walkTarget.getX() + 0.5, walkTarget.getY(), walkTarget.getZ() + 0.5, 0.6);
+        AgentTickProfiler.record(agent, AgentTickProfiler.Cost.PATHFIND, pathStart);
     }
 
     /**
@@ -352,24 +736,28 @@ public class VillagerAgentManager {
     private static void performFarmingActionAtBlock(VillagerEntity villager, ServerWorld world,
                                                      VillagerAgentData agent, VillagerAction action,
                                                      BlockPos target) {
+        // Block changes are buffered until the end of the farming pass; read through them
+        IBlockReader blocks = BlockChangeBuffer.view(world);
         switch (action.getActionType()) {
             case HARVEST:
                 // Verify the crop is still there and mature
-                if (FarmingAction.isMatureCrop(world, target)) {
+                if (FarmingAction.isMatureCrop(blocks, target)) {
                     // Remember which crop was here before harvesting
                     net.minecraft.block.Block harvestedCrop = FarmingAction.harvestBlockAt(villager, world, agent, target);
                     // After harvesting, replant the same crop type
-                    if (harvestedCrop != null && FarmingAction.isEmptyFarmland(world, target.below())) {
+                    if (harvestedCrop != null && FarmingAction.isEmptyFarmland(blocks, target.below())) {
                         FarmingAction.plantSpecificCropAt(villager, world, agent, target.below(), harvestedCrop);
                     }
+                    CropForecast.observe(world, target, true);
                 } else {
                     LOGGER.debug(agent.getName() + " arrived but crop at " + target + " is gone");
                 }
                 break;
             case GROW:
                 // Plant on empty farmland: prefer same crop as adjacent blocks, else random
-                if (FarmingAction.isEmptyFarmland(world, target)) {
+                if (FarmingAction.isEmptyFarmland(blocks, target)) {
                     FarmingAction.plantSmartAt(villager, world, agent, target);
+                    CropForecast.observe(world, target.above(), true);
                 } else {
                     LOGGER.debug(agent.getName() + " arrived but farmland at " + target + " is occupied");
                 }
@@ -430,7 +818,7 @@ public class VillagerAgentManager {
     /**
      * Process the agent's current goals
      */
-    private static void processGoals(VillagerEntity villager, VillagerAgentData agent) {
+    private static void processGoals(VillagerAgentData agent) {
         List<AgentGoal> goals = agent.getGoals();
         if (goals.isEmpty()) return;
         
@@ -442,16 +830,16 @@ public class VillagerAgentManager {
         // Execute goal based on type
         switch (currentGoal.getGoalType()) {
             case "gather":
-                executeGatherGoal(villager, agent, currentGoal);
+                executeGatherGoal(agent, currentGoal);
                 break;
             case "craft":
-                executeCraftGoal(villager, agent, currentGoal);
+                executeCraftGoal(agent, currentGoal);
                 break;
             case "trade":
-                executeTradeGoal(villager, agent, currentGoal);
+                executeTradeGoal(agent, currentGoal);
                 break;
             case "socialize":
-                executeSocializeGoal(villager, agent, currentGoal);
+                executeSocializeGoal(agent, currentGoal);
                 break;
             default:
                 LOGGER.warn("Unknown goal type: " + currentGoal.getGoalType());
@@ -461,23 +849,23 @@ public class VillagerAgentManager {
         goals.removeIf(AgentGoal::isCompleted);
     }
     
-    private static void executeGatherGoal(VillagerEntity villager, VillagerAgentData agent, AgentGoal goal) {
+    private static void executeGatherGoal(VillagerAgentData agent, AgentGoal goal) {
         // For farmer villagers gathering crops, the farming walk-then-act system
         // handles this automatically via performFarmerActions. Just log intent.
         agent.addMemory("Trying to gather " + goal.getTargetItem());
     }
     
-    private static void executeCraftGoal(VillagerEntity villager, VillagerAgentData agent, AgentGoal goal) {
+    private static void executeCraftGoal(VillagerAgentData agent, AgentGoal goal) {
         // TODO: Implementation for crafting items
         agent.addMemory("Tried to craft " + goal.getTargetItem());
     }
     
-    private static void executeTradeGoal(VillagerEntity villager, VillagerAgentData agent, AgentGoal goal) {
+    private static void executeTradeGoal(VillagerAgentData agent, AgentGoal goal) {
         // TODO: Implementation for trading with players or other villagers
         agent.addMemory("Looking for trading opportunities");
     }
     
-    private static void executeSocializeGoal(VillagerEntity villager, VillagerAgentData agent, AgentGoal goal) {
+    private static void executeSocializeGoal(VillagerAgentData agent, AgentGoal goal) {
         // TODO: Implementation for villager-to-villager interaction
         agent.addMemory("Socializing with other villagers");
     }
@@ -504,7 +892,7 @@ public class VillagerAgentManager {
      * Generate new goals for the agent using simple logic
      * TODO: Integrate with LLM for more intelligent goal generation
      */
-    private static void generateNewGoals(VillagerEntity villager, VillagerAgentData agent) {
+    private static void generateNewGoals(VillagerAgentData agent) {
         // For now, generate simple random goals
         // Later this will use LLM to generate contextual, personality-driven goals
 
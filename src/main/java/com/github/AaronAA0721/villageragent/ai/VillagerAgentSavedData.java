@@ -64,7 +64,7 @@ public class VillagerAgentSavedData extends WorldSavedData {
             UUID villagerId = agentNBT.getUUID("VillagerId");
 
             // Create new agent and load data
-            VillagerAgentData agent = new VillagerAgentData(villagerId);
+            VillagerAgentData agent = new VillagerAgentData(villagerId, false);
             agent.deserializeNBT(agentNBT);
 
             // Add to manager
@@ -0,0 +1,116 @@
+package com.github.AaronAA0721.villageragent.ai;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An LLM-generated villager name and personality.
+ * Requests are batched so villagers spawning together share one LLM call.
+ */
+public class VillagerIdentity {
+    private static final LLMMicroBatcher<Void, VillagerIdentity> BATCHER =
+            new LLMMicroBatcher<>("identity", VillagerIdentity::buildBatchPrompt, VillagerIdentity::parseBatch);
+
+    private final String name;
+    private final String personality;
+
+    public VillagerIdentity(String name, String personality) {
+        this.name = name;
+        this.personality = personality;
+    }
+
+    public String getName() { return name; }
+    public String getPersonality() { return personality; }
+
+    /**
+     * Request a fresh identity; completes when the batch containing it returns.
+     */
+    public static CompletableFuture<VillagerIdentity> request() {
+        return BATCHER.submit(null);
+    }
+
+    private static LLMPrompt buildBatchPrompt(List<Void> items) {
+        int count = items.size();
+        String systemPrompt = "You are a creative assistant that generates unique medieval villager characters. " +
+                "Respond ONLY with a JSON object in this exact format: " +
+                "{\"villagers\":[{\"name\":\"VillagerName\",\"personality\":\"personality description\"}]}. " +
+                "Each name should be a single medieval-style first name, and no two names may repeat. " +
+                "Each personality should be a short phrase (3-6 words) describing their character traits.";
+
+        String userPrompt = count == 1
+                ? "Generate 1 unique villager character with a medieval name and interesting personality, as a villagers array with one object."
+                : "Generate " + count + " unique villager characters with medieval names and interesting personalities, as a villagers array of exactly " + count + " objects.";
+
+        return new LLMPrompt(systemPrompt, "", userPrompt).withJsonOutput();
+    }
+
+    /**
+     * Stream identities out of the reply. Accepts {@code {"villagers":[...]}},
+     * a bare array or a lone object, skips malformed entries, and keeps the
+     * entries read before a truncated or broken tail.
+     */
+    static List<VillagerIdentity> parseBatch(String response) {
+        int arrayStart = response.indexOf('[');
+        int objectStart = response.indexOf('{');
+        int start = arrayStart < 0 ? objectStart : objectStart < 0 ? arrayStart : Math.min(arrayStart, objectStart);
+        if (start < 0) {
+            throw new IllegalArgumentException("No JSON in reply: " + response.substring(0, Math.min(100, response.length())));
+        }
+
+        List<VillagerIdentity> identities = new ArrayList<>();
+        try (JsonReader json = new JsonReader(new StringReader(response.substring(start)))) {
+            json.setLenient(true);
+            readIdentities(json, identities);
+        } catch (IOException | IllegalStateException e) {
+            if (identities.isEmpty()) {
+                throw new IllegalArgumentException("Malformed identity JSON: " + e.getMessage(), e);
+            }
+        }
+        return identities;
+    }
+
+    private static void readIdentities(JsonReader json, List<VillagerIdentity> identities) throws IOException {
+        JsonToken token = json.peek();
+        if (token == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                readIdentities(json, identities);
+            }
+            json.endArray();
+        } else if (token == JsonToken.BEGIN_OBJECT) {
+            String name = null;
+            String personality = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                JsonToken value = json.peek();
+                if ("name".equals(key) && value == JsonToken.STRING) {
+                    name = json.nextString().trim();
+                } else if ("personality".equals(key) && value == JsonToken.STRING) {
+                    personality = json.nextString().trim();
+                } else if (value == JsonToken.BEGIN_ARRAY) {
+                    readIdentities(json, identities);  // {"villagers": [...]}
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (name != null && personality != null && !name.isEmpty() && !personality.isEmpty()) {
+                identities.add(new VillagerIdentity(name, personality));
+            }
+        } else {
+            json.skipValue();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " - " + personality;
+    }
+}
@@ -7,7 +7,9 @@ import net.minecraft.entity.LivingEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -31,8 +33,12 @@ public class VillagerVisionSystem {
         Vector3d villagerPos = villager.position();
         BlockPos centerPos = villager.blockPosition();
         
-        // Scan blocks in front of villager
-        scanBlocks(centerPos, world, observations);
+        // Scan blocks in front of villager; on the server only loaded chunks are read
+        IBlockReader blocks = world instanceof ServerWorld
+                ? ChunkSectionSnapshot.capture((ServerWorld) world, centerPos, VISION_RANGE)
+                : world;
+        scanBlocks(centerPos, blocks, observations);
+        if (blocks instanceof ChunkSectionSnapshot) ((ChunkSectionSnapshot) blocks).reportSkippedReads();
         
         // Scan nearby entities
         scanEntities(villager, world, observations);
@@ -43,12 +49,17 @@ public class VillagerVisionSystem {
         return observations;
     }
     
-    private static void scanBlocks(BlockPos center, World world, List<VillagerObservation> observations) {
+    /**
+     * Block part of the scan. Reads blocks only, so it can run off the server
+     * thread on a {@link ChunkSectionSnapshot}; the entity and item scans cannot.
+     */
+    static void scanBlocks(BlockPos center, IBlockReader world, List<VillagerObservation> observations) {
         for (int x = -VISION_RANGE; x <= VISION_RANGE; x++) {
             for (int y = -VISION_HEIGHT; y <= VISION_HEIGHT; y++) {
                 for (int z = -VISION_RANGE; z <= VISION_RANGE; z++) {
                     BlockPos pos = center.offset(x, y, z);
                     BlockState state = world.getBlockState(pos);
+                    if (state == LoadedBlocks.UNLOADED) continue; // nothing to see in an unloaded chunk
                     Block block = state.getBlock();
                     
                     if (!block.isAir(state, world, pos)) {
@@ -1,15 +1,29 @@
 package com.github.AaronAA0721.villageragent.commands;
 
+import com.github.AaronAA0721.villageragent.ai.AgentTickProfiler;
+import com.github.AaronAA0721.villageragent.ai.LLMRouter;
+import com.github.AaronAA0721.villageragent.ai.ProviderHealth;
+import com.github.AaronAA0721.villageragent.ai.StubLLMProvider;
+import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
 import com.github.AaronAA0721.villageragent.ai.VillagerAgentManager;
 import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.LatencyHistogram;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.command.CommandSource;
 import net.minecraft.command.Commands;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.StringTextComponent;
 import net.minecraft.util.text.TextFormatting;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * Command handler for VillagerAgent mod
@@ -52,6 +66,14 @@ public class VillagerAgentCommand {
                         .executes(VillagerAgentCommand::setApiUrl))))
             .then(Commands.literal("info")
                 .executes(VillagerAgentCommand::showInfo))
+            .then(Commands.literal("stats")
+                .executes(VillagerAgentCommand::showStats)
+                .then(Commands.literal("counters")
+                    .executes(VillagerAgentCommand::showCounters)))
+            .then(Commands.literal("top")
+                .executes(context -> showTop(context, 10))
+                .then(Commands.argument("n", IntegerArgumentType.integer(1, 50))
+                    .executes(context -> showTop(context, IntegerArgumentType.getInteger(context, "n")))))
             .then(Commands.literal("reload")
                 .executes(VillagerAgentCommand::reloadConfig));
     }
@@ -158,10 +180,146 @@ public class VillagerAgentCommand {
         String apiKey = ModConfig.LLM_API_KEY.get();
         String keyStatus = (apiKey == null || apiKey.isEmpty()) ? TextFormatting.RED + "NOT SET" : TextFormatting.GREEN + "SET (hidden)";
         source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "API Key: " + keyStatus), false);
+        source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "Routing: " + ModConfig.LLM_ROUTING_STRATEGY.get()
+                + " over " + LLMRouter.endpoints() + ", chat hedging " + (ModConfig.LLM_HEDGE_CHAT.get() ? "on" : "off")), false);
+        Map<String, ProviderHealth> providers = ProviderHealth.all();
+        if (!providers.isEmpty()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- Provider Health ---"), false);
+            for (ProviderHealth health : providers.values()) {
+                TextFormatting color;
+                switch (health.getState()) {
+                    case CLOSED:    color = TextFormatting.GREEN; break;
+                    case HALF_OPEN: color = TextFormatting.YELLOW; break;
+                    default:        color = TextFormatting.RED; break;
+                }
+                source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + health.getProvider() + ": "
+                        + color + health.getState()
+                        + TextFormatting.YELLOW + String.format(" (ewma %.0fms, p95 %dms, timeout %dms, failures %d)",
+                                health.getEwmaMs(), health.getPercentileMs(95),
+                                health.getReadTimeoutMs(), health.getConsecutiveFailures())), false);
+            }
+        }
         source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "========================"), false);
         return 1;
     }
 
+    private static int showStats(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "=== VillagerAgent Stats ==="), false);
+
+        Map<String, LatencyHistogram> histograms = MetricsRegistry.getHistograms();
+        if (!histograms.isEmpty()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- Latency (p50 / p99 / max, count) ---"), false);
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + entry.getKey() + ": "
+                        + TextFormatting.WHITE + String.format("%s / %s / %s, %d",
+                                formatMicros(histogram.getPercentileMicros(50)),
+                                formatMicros(histogram.getPercentileMicros(99)),
+                                formatMicros(histogram.getMaxMicros()), histogram.getCount())), false);
+            }
+        }
+
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- Queues ---"), false);
+        for (Map.Entry<String, Long> entry : MetricsRegistry.snapshotGauges().entrySet()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + entry.getKey() + ": "
+                    + TextFormatting.WHITE + entry.getValue()), false);
+        }
+
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- LLM Calls ---"), false);
+        Map<String, Long> counters = MetricsRegistry.snapshotCounters();
+        long okCalls = 0;
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            if (entry.getKey().startsWith("llm_calls_total{")) {
+                if (entry.getKey().endsWith("status=\"ok\"}")) okCalls += entry.getValue();
+                source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + entry.getKey().substring("llm_calls_total".length())
+                        + ": " + TextFormatting.WHITE + entry.getValue()), false);
+            }
+        }
+
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- Caches ---"), false);
+        sendHitRate(source, "Chat replies", MetricsRegistry.sum("chat_cache_hits_total"),
+                MetricsRegistry.sum("chat_cache_misses_total"));
+        long tradeFast = MetricsRegistry.sum("trade_decisions_total");
+        long tradeLlm = counters.getOrDefault(MetricsRegistry.name("trade_decisions_total", "path", "ask_llm"), 0L);
+        sendHitRate(source, "Trade fast path", tradeFast - tradeLlm, tradeLlm);
+        long promptHits = MetricsRegistry.sum("llm_cache_hits_total");
+        sendHitRate(source, "Provider prompt cache", promptHits, okCalls - promptHits);
+
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "--- Network ---"), false);
+        source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "Packet bytes: " + TextFormatting.WHITE
+                + MetricsRegistry.sum("packet_bytes_total")), false);
+        source.sendSuccess(new StringTextComponent(TextFormatting.GRAY + "/va stats counters lists every counter"), false);
+        return 1;
+    }
+
+    private static int showTop(CommandContext<CommandSource> context, int limit) {
+        CommandSource source = context.getSource();
+        if (!ModConfig.AGENT_PROFILER_ENABLED.get()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.RED + "The agent profiler is disabled (agent_profiler_enabled)"), false);
+            return 0;
+        }
+        List<AgentTickProfiler.Profile> top = AgentTickProfiler.top(limit);
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "=== Costliest Villagers (last "
+                + AgentTickProfiler.WINDOW_TICKS / 20 + "s, µs/tick) ==="), false);
+        if (top.isEmpty()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "No villager cost recorded yet"), false);
+        }
+        for (AgentTickProfiler.Profile profile : top) {
+            VillagerAgentData agent = VillagerAgentManager.getAgent(profile.getVillagerId());
+            if (agent == null) continue;
+
+            String position = "unloaded";
+            for (ServerWorld level : source.getServer().getAllLevels()) {
+                Entity entity = level.getEntity(profile.getVillagerId());
+                if (entity != null) {
+                    BlockPos pos = entity.blockPosition();
+                    position = pos.getX() + " " + pos.getY() + " " + pos.getZ();
+                    break;
+                }
+            }
+            String state = agent.getCurrentActivity()
+                    + (agent.getCurrentAction() != null ? "/" + agent.getCurrentAction().getActionType().name().toLowerCase() : "");
+            double perTick = AgentTickProfiler.WINDOW_TICKS * 1_000.0;
+            long farming = profile.getWindowNanos(AgentTickProfiler.Cost.FARMING);
+            long scan = profile.getWindowNanos(AgentTickProfiler.Cost.SCAN);
+            long path = profile.getWindowNanos(AgentTickProfiler.Cost.PATHFIND);
+
+            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + agent.getName()
+                    + TextFormatting.GRAY + " [" + position + ", " + state + "] "
+                    + TextFormatting.WHITE + String.format("%.1f", profile.getMicrosPerTick())
+                    + (profile.isThrottled() ? TextFormatting.RED + " THROTTLED" : "")), false);
+            source.sendSuccess(new StringTextComponent(TextFormatting.GRAY + String.format(
+                    "  think %.1f, scan %.1f, pathfind %.1f, farming other %.1f, pickup %.1f",
+                    profile.getWindowNanos(AgentTickProfiler.Cost.THINK) / perTick,
+                    scan / perTick, path / perTick, Math.max(0, farming - scan - path) / perTick,
+                    profile.getWindowNanos(AgentTickProfiler.Cost.PICKUP) / perTick)), false);
+        }
+        return 1;
+    }
+
+    private static int showCounters(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        source.sendSuccess(new StringTextComponent(TextFormatting.GOLD + "=== VillagerAgent Counters ==="), false);
+        for (Map.Entry<String, Long> entry : MetricsRegistry.snapshotCounters().entrySet()) {
+            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + entry.getKey() + ": "
+                    + TextFormatting.WHITE + entry.getValue()), false);
+        }
+        return 1;
+    }
+
+    private static void sendHitRate(CommandSource source, String name, long hits, long misses) {
+        long total = hits + misses;
+        String rate = total == 0 ? "n/a" : String.format("%.1f%% of %d", 100.0 * hits / total, total);
+        source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + name + ": " + TextFormatting.WHITE + rate), false);
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1_000) return micros + "µs";
+        if (micros < 1_000_000) return String.format("%.1fms", micros / 1_000.0);
+        return String.format("%.2fs", micros / 1_000_000.0);
+    }
+
     private static int reloadConfig(CommandContext<CommandSource> context) {
         CommandSource source = context.getSource();
         try {
@@ -180,14 +338,18 @@ public class VillagerAgentCommand {
         String type = StringArgumentType.getString(context, "type");
         CommandSource source = context.getSource();
 
-        if (!type.equals("openai") && !type.equals("anthropic") && !type.equals("ollama")) {
+        if (!type.equals("openai") && !type.equals("anthropic") && !type.equals("ollama")
+                && !type.equals("gemini") && !type.equals("stub")) {
             source.sendSuccess(new StringTextComponent(TextFormatting.RED + "Invalid API type: " + type), false);
-            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "Valid types: openai, anthropic, ollama"), false);
+            source.sendSuccess(new StringTextComponent(TextFormatting.YELLOW + "Valid types: openai, anthropic, ollama, gemini, stub"), false);
             return 0;
         }
 
         ModConfig.LLM_API_TYPE.set(type);
         ModConfig.SPEC.save();
+        if (type.equals("stub")) {
+            StubLLMProvider.reset(); // replay the seeded sequence from the start
+        }
         source.sendSuccess(new StringTextComponent(TextFormatting.GREEN + "✓ API Type set to: " + type), true);
         return 1;
     }
@@ -2,6 +2,9 @@ package com.github.AaronAA0721.villageragent.config;
 
 import net.minecraftforge.common.ForgeConfigSpec;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class ModConfig {
     public static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
     public static final ForgeConfigSpec SPEC;
@@ -13,20 +16,94 @@ public class ModConfig {
     public static final ForgeConfigSpec.ConfigValue<String> LLM_MODEL;
     public static final ForgeConfigSpec.IntValue LLM_MAX_TOKENS;
     public static final ForgeConfigSpec.DoubleValue LLM_TEMPERATURE;
+    public static final ForgeConfigSpec.IntValue LLM_PROMPT_TOKEN_BUDGET;
+    public static final ForgeConfigSpec.IntValue LLM_VERBATIM_CONVERSATION_LINES;
+    public static final ForgeConfigSpec.IntValue LLM_BATCH_WINDOW_MS;
+    public static final ForgeConfigSpec.IntValue LLM_BATCH_MAX_ITEMS;
+
+    // LLM Resilience Settings
+    public static final ForgeConfigSpec.IntValue LLM_CONNECT_TIMEOUT_MS;
+    public static final ForgeConfigSpec.IntValue LLM_MIN_READ_TIMEOUT_MS;
+    public static final ForgeConfigSpec.IntValue LLM_MAX_READ_TIMEOUT_MS;
+    public static final ForgeConfigSpec.IntValue LLM_MAX_RETRIES;
+    public static final ForgeConfigSpec.IntValue LLM_RETRY_MAX_BACKOFF_MS;
+    public static final ForgeConfigSpec.IntValue LLM_CIRCUIT_FAILURE_THRESHOLD;
+    public static final ForgeConfigSpec.IntValue LLM_CIRCUIT_COOLDOWN_MS;
+
+    // LLM Routing Settings
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> LLM_PROVIDERS;
+    public static final ForgeConfigSpec.ConfigValue<String> LLM_ROUTING_STRATEGY;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> LLM_ROUTE_CHAT;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> LLM_ROUTE_TRADE;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> LLM_ROUTE_BACKGROUND;
+    public static final ForgeConfigSpec.BooleanValue LLM_HEDGE_CHAT;
+    public static final ForgeConfigSpec.IntValue LLM_HEDGE_MIN_DELAY_MS;
+
+    // Chat Reply Cache Settings
+    public static final ForgeConfigSpec.BooleanValue CHAT_CACHE_ENABLED;
+    public static final ForgeConfigSpec.IntValue CHAT_CACHE_SIZE;
+    public static final ForgeConfigSpec.IntValue CHAT_CACHE_TTL_MINUTES;
+    public static final ForgeConfigSpec.IntValue CHAT_CACHE_MAX_WORDS;
+    public static final ForgeConfigSpec.DoubleValue CHAT_CACHE_FUZZY_THRESHOLD;
+
+    // Trade Settings
+    public static final ForgeConfigSpec.BooleanValue TRADE_FAST_PATH_ENABLED;
+    public static final ForgeConfigSpec.DoubleValue TRADE_ACCEPT_RATIO;
+    public static final ForgeConfigSpec.DoubleValue TRADE_REJECT_RATIO;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> TRADE_ITEM_VALUES;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> TRADE_PERSONALITY_MODIFIERS;
+
+    // Stub LLM Settings (llm_api_type = stub)
+    public static final ForgeConfigSpec.LongValue STUB_SEED;
+    public static final ForgeConfigSpec.ConfigValue<String> STUB_LATENCY_DISTRIBUTION;
+    public static final ForgeConfigSpec.IntValue STUB_LATENCY_MS;
+    public static final ForgeConfigSpec.IntValue STUB_LATENCY_SPREAD_MS;
+    public static final ForgeConfigSpec.DoubleValue STUB_TIMEOUT_RATE;
+    public static final ForgeConfigSpec.IntValue STUB_TIMEOUT_MS;
+    public static final ForgeConfigSpec.DoubleValue STUB_RATE_LIMIT_RATE;
+    public static final ForgeConfigSpec.DoubleValue STUB_SERVER_ERROR_RATE;
+    public static final ForgeConfigSpec.DoubleValue STUB_TRADE_ACCEPT_RATE;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> STUB_CHAT_REPLIES;
 
     // Agent Behavior Settings
     public static final ForgeConfigSpec.BooleanValue ENABLE_AI_AGENTS;
     public static final ForgeConfigSpec.IntValue AGENT_THINK_INTERVAL;
+    public static final ForgeConfigSpec.BooleanValue AGENT_LLM_PLANNING;
+    public static final ForgeConfigSpec.IntValue AGENT_PLAN_INTERVAL;
+    public static final ForgeConfigSpec.IntValue AGENT_PLAN_MAX_IN_FLIGHT;
     public static final ForgeConfigSpec.BooleanValue ENABLE_VILLAGER_CHAT;
     public static final ForgeConfigSpec.BooleanValue ENABLE_WORLD_INTERACTION;
     public static final ForgeConfigSpec.BooleanValue ENABLE_AUTO_PICKUP;
     public static final ForgeConfigSpec.IntValue VILLAGER_PICKUP_INTERVAL;
+    public static final ForgeConfigSpec.BooleanValue FARM_SCAN_PARALLEL;
+    public static final ForgeConfigSpec.IntValue FARM_SCAN_PARALLEL_MIN_SCANS;
+    public static final ForgeConfigSpec.IntValue FARM_SCAN_THREADS;
+    public static final ForgeConfigSpec.BooleanValue FARM_DISPATCHER_ENABLED;
+    public static final ForgeConfigSpec.IntValue FARM_RESERVATION_TIMEOUT_TICKS;
+    public static final ForgeConfigSpec.IntValue FARM_ROUTE_MAX_STOPS;
+    public static final ForgeConfigSpec.BooleanValue FARM_FORECAST_ENABLED;
+    public static final ForgeConfigSpec.BooleanValue FARM_BRAIN_WALKING;
+    public static final ForgeConfigSpec.BooleanValue FARM_DIRECT_HARVEST;
+    public static final ForgeConfigSpec.BooleanValue BATCHED_BLOCK_UPDATES;
+    public static final ForgeConfigSpec.BooleanValue ASYNC_PATHFINDING;
+    public static final ForgeConfigSpec.IntValue PATHFINDING_THREADS;
+    public static final ForgeConfigSpec.BooleanValue NAV_GRAPH_ENABLED;
+    public static final ForgeConfigSpec.IntValue NAV_GRAPH_LONG_TRIP_DISTANCE;
+    public static final ForgeConfigSpec.DoubleValue FARM_REVISIT_MATURE_FRACTION;
+
+    // Metrics Settings
+    public static final ForgeConfigSpec.BooleanValue METRICS_EXPORT_ENABLED;
+    public static final ForgeConfigSpec.IntValue METRICS_EXPORT_INTERVAL_SECONDS;
+    public static final ForgeConfigSpec.BooleanValue AGENT_PROFILER_ENABLED;
+    public static final ForgeConfigSpec.BooleanValue AGENT_THROTTLE_ENABLED;
+    public static final ForgeConfigSpec.IntValue AGENT_THROTTLE_BUDGET_MICROS;
+    public static final ForgeConfigSpec.IntValue AGENT_THROTTLE_STRIDE;
 
     static {
         BUILDER.push("LLM Settings");
         
         LLM_API_TYPE = BUILDER
-                .comment("LLM API type to use (openai, anthropic, ollama, gemini)")
+                .comment("LLM API type to use (openai, anthropic, ollama, gemini, stub). 'stub' answers locally for offline load testing")
                 .define("llm_api_type", "openai");
         
         LLM_API_KEY = BUILDER
@@ -48,8 +125,199 @@ public class ModConfig {
         LLM_TEMPERATURE = BUILDER
                 .comment("LLM temperature (creativity) - 0.0 to 2.0")
                 .defineInRange("llm_temperature", 0.7, 0.0, 2.0);
+
+        LLM_PROMPT_TOKEN_BUDGET = BUILDER
+                .comment("Approximate token budget for the context part of each prompt (memories, history, inventory). Least relevant context is dropped first")
+                .defineInRange("llm_prompt_token_budget", 1200, 200, 32000);
+
+        LLM_VERBATIM_CONVERSATION_LINES = BUILDER
+                .comment("Most recent conversation lines sent word-for-word; older lines from today are folded into a background summary")
+                .defineInRange("llm_verbatim_conversation_lines", 8, 2, 40);
+
+        LLM_BATCH_WINDOW_MS = BUILDER
+                .comment("Milliseconds to gather background requests (villager identities) into one LLM call. 0 disables batching")
+                .defineInRange("llm_batch_window_ms", 250, 0, 5000);
+
+        LLM_BATCH_MAX_ITEMS = BUILDER
+                .comment("Maximum background requests combined into a single LLM call")
+                .defineInRange("llm_batch_max_items", 8, 1, 32);
         
         BUILDER.pop();
+
+        BUILDER.push("LLM Resilience");
+
+        LLM_CONNECT_TIMEOUT_MS = BUILDER
+                .comment("Connect timeout for LLM requests in milliseconds")
+                .defineInRange("llm_connect_timeout_ms", 5000, 500, 60000);
+
+        LLM_MIN_READ_TIMEOUT_MS = BUILDER
+                .comment("Lower bound for the adaptive read timeout (3x the provider's recent p99 latency), in milliseconds")
+                .defineInRange("llm_min_read_timeout_ms", 5000, 500, 300000);
+
+        LLM_MAX_READ_TIMEOUT_MS = BUILDER
+                .comment("Upper bound for the adaptive read timeout, also used until enough latency samples exist, in milliseconds")
+                .defineInRange("llm_max_read_timeout_ms", 60000, 1000, 300000);
+
+        LLM_MAX_RETRIES = BUILDER
+                .comment("Retries for timeouts, HTTP 429 and 5xx responses (jittered exponential backoff, honors Retry-After)")
+                .defineInRange("llm_max_retries", 2, 0, 5);
+
+        LLM_RETRY_MAX_BACKOFF_MS = BUILDER
+                .comment("Longest wait before a retry in milliseconds; a longer Retry-After fails the request instead")
+                .defineInRange("llm_retry_max_backoff_ms", 8000, 100, 60000);
+
+        LLM_CIRCUIT_FAILURE_THRESHOLD = BUILDER
+                .comment("Consecutive transient failures that open the circuit breaker; villagers then answer with fallback lines")
+                .defineInRange("llm_circuit_failure_threshold", 5, 1, 100);
+
+        LLM_CIRCUIT_COOLDOWN_MS = BUILDER
+                .comment("How long the circuit stays open before a probe request is allowed, in milliseconds")
+                .defineInRange("llm_circuit_cooldown_ms", 30000, 1000, 600000);
+
+        BUILDER.pop();
+
+        BUILDER.push("LLM Routing");
+
+        LLM_PROVIDERS = BUILDER
+                .comment("Additional LLM endpoints as \"name|type|model|url|apiKey\" (e.g. \"local|ollama|llama3||\"). Blank fields use the LLM Settings values. Empty list = just the llm_api_type provider")
+                .defineList("llm_providers", Arrays.asList(), o -> o instanceof String);
+
+        LLM_ROUTING_STRATEGY = BUILDER
+                .comment("How to pick an endpoint: 'fastest' (lowest measured latency among healthy endpoints) or 'ordered' (first healthy in list order)")
+                .define("llm_routing_strategy", "fastest");
+
+        LLM_ROUTE_CHAT = BUILDER
+                .comment("Endpoint names allowed for player chat, empty = all")
+                .defineList("llm_route_chat", Arrays.asList(), o -> o instanceof String);
+
+        LLM_ROUTE_TRADE = BUILDER
+                .comment("Endpoint names allowed for trade decisions, empty = all")
+                .defineList("llm_route_trade", Arrays.asList(), o -> o instanceof String);
+
+        LLM_ROUTE_BACKGROUND = BUILDER
+                .comment("Endpoint names allowed for background work (identities, summaries, planning), empty = all")
+                .defineList("llm_route_background", Arrays.asList(), o -> o instanceof String);
+
+        LLM_HEDGE_CHAT = BUILDER
+                .comment("Send a second chat request when the first is slower than the endpoint's p95 latency, and use whichever answers first")
+                .define("llm_hedge_chat", false);
+
+        LLM_HEDGE_MIN_DELAY_MS = BUILDER
+                .comment("Never hedge a chat request sooner than this, in milliseconds")
+                .defineInRange("llm_hedge_min_delay_ms", 500, 50, 60000);
+
+        BUILDER.pop();
+
+        BUILDER.push("Chat Reply Cache");
+
+        CHAT_CACHE_ENABLED = BUILDER
+                .comment("Answer short conversation openers (\"hi\", \"what do you sell?\") from a local cache shared by villagers with the same profession and personality")
+                .define("chat_cache_enabled", true);
+
+        CHAT_CACHE_SIZE = BUILDER
+                .comment("Maximum cached openers; least recently used are evicted first")
+                .defineInRange("chat_cache_size", 512, 16, 65536);
+
+        CHAT_CACHE_TTL_MINUTES = BUILDER
+                .comment("Minutes a cached reply stays valid")
+                .defineInRange("chat_cache_ttl_minutes", 30, 1, 1440);
+
+        CHAT_CACHE_MAX_WORDS = BUILDER
+                .comment("Only messages with at most this many words are cached")
+                .defineInRange("chat_cache_max_words", 6, 1, 20);
+
+        CHAT_CACHE_FUZZY_THRESHOLD = BUILDER
+                .comment("Trigram similarity (0-1) at which a different message reuses a cached reply. 1.0 = exact matches only")
+                .defineInRange("chat_cache_fuzzy_threshold", 0.7, 0.0, 1.0);
+
+        BUILDER.pop();
+
+        BUILDER.push("Trade");
+
+        TRADE_FAST_PATH_ENABLED = BUILDER
+                .comment("Decide clear-cut trades locally (missing items, nothing offered, clearly fair or unfair by item value); only ambiguous trades ask the LLM")
+                .define("trade_fast_path_enabled", true);
+
+        TRADE_ACCEPT_RATIO = BUILDER
+                .comment("Accept without asking the LLM when offered value / requested value is at least this (before personality)")
+                .defineInRange("trade_accept_ratio", 1.5, 0.1, 100.0);
+
+        TRADE_REJECT_RATIO = BUILDER
+                .comment("Reject without asking the LLM when offered value / requested value is at most this (before personality)")
+                .defineInRange("trade_reject_ratio", 0.5, 0.0, 100.0);
+
+        TRADE_ITEM_VALUES = BUILDER
+                .comment("Item values in emeralds as \"item=value\". Trades involving unlisted or enchanted items go to the LLM")
+                .defineList("trade_item_values", Arrays.asList(
+                        "minecraft:emerald=1", "minecraft:diamond=4", "minecraft:netherite_ingot=16",
+                        "minecraft:gold_ingot=0.5", "minecraft:iron_ingot=0.25", "minecraft:coal=0.1",
+                        "minecraft:wheat=0.05", "minecraft:wheat_seeds=0.01", "minecraft:carrot=0.05",
+                        "minecraft:potato=0.05", "minecraft:beetroot=0.05", "minecraft:bread=0.2",
+                        "minecraft:pumpkin=0.2", "minecraft:melon_slice=0.03", "minecraft:apple=0.1",
+                        "minecraft:paper=0.05", "minecraft:book=0.3", "minecraft:leather=0.2",
+                        "minecraft:string=0.05", "minecraft:stick=0.005", "minecraft:oak_log=0.05",
+                        "minecraft:dirt=0.002", "minecraft:cobblestone=0.002", "minecraft:sand=0.002",
+                        "minecraft:iron_hoe=0.5", "minecraft:diamond_hoe=8", "minecraft:iron_pickaxe=0.8",
+                        "minecraft:diamond_pickaxe=12"
+                ), o -> o instanceof String);
+
+        TRADE_PERSONALITY_MODIFIERS = BUILDER
+                .comment("Personality keyword multipliers for both ratios as \"keyword=multiplier\"; above 1 drives a harder bargain")
+                .defineList("trade_personality_modifiers", Arrays.asList(
+                        "generous=0.75", "friendly=0.9", "kind=0.9",
+                        "shrewd=1.3", "greedy=1.4", "business=1.2", "grumpy=1.15", "cautious=1.1"
+                ), o -> o instanceof String);
+
+        BUILDER.pop();
+
+        BUILDER.push("Stub LLM");
+
+        STUB_SEED = BUILDER
+                .comment("Seed for the stub provider; the same seed and request order replays the same latencies, failures and replies")
+                .defineInRange("stub_seed", 42L, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        STUB_LATENCY_DISTRIBUTION = BUILDER
+                .comment("Stub latency distribution (fixed, uniform, exponential, lognormal)")
+                .define("stub_latency_distribution", "lognormal");
+
+        STUB_LATENCY_MS = BUILDER
+                .comment("Median stub latency in milliseconds")
+                .defineInRange("stub_latency_ms", 400, 0, 120000);
+
+        STUB_LATENCY_SPREAD_MS = BUILDER
+                .comment("Stub latency spread in milliseconds (half-width for uniform, ~1 sigma above the median for lognormal)")
+                .defineInRange("stub_latency_spread_ms", 300, 0, 120000);
+
+        STUB_TIMEOUT_RATE = BUILDER
+                .comment("Fraction of stub requests that hang and then time out")
+                .defineInRange("stub_timeout_rate", 0.0, 0.0, 1.0);
+
+        STUB_TIMEOUT_MS = BUILDER
+                .comment("How long a timed-out stub request hangs before failing, in milliseconds")
+                .defineInRange("stub_timeout_ms", 10000, 0, 300000);
+
+        STUB_RATE_LIMIT_RATE = BUILDER
+                .comment("Fraction of stub requests that fail with HTTP 429")
+                .defineInRange("stub_rate_limit_rate", 0.0, 0.0, 1.0);
+
+        STUB_SERVER_ERROR_RATE = BUILDER
+                .comment("Fraction of stub requests that fail with HTTP 500")
+                .defineInRange("stub_server_error_rate", 0.0, 0.0, 1.0);
+
+        STUB_TRADE_ACCEPT_RATE = BUILDER
+                .comment("Fraction of trade evaluations the stub answers with ACCEPT")
+                .defineInRange("stub_trade_accept_rate", 0.5, 0.0, 1.0);
+
+        STUB_CHAT_REPLIES = BUILDER
+                .comment("Chat lines the stub picks from")
+                .defineList("stub_chat_replies", Arrays.asList(
+                        "Good day to you, traveler.",
+                        "The harvest has been kind to us this season.",
+                        "Mind the crops on your way through!",
+                        "I have a few things to trade, if you're interested."
+                ), o -> o instanceof String);
+
+        BUILDER.pop();
         
         BUILDER.push("Agent Behavior");
         
@@ -60,6 +328,18 @@ public class ModConfig {
         AGENT_THINK_INTERVAL = BUILDER
                 .comment("Ticks between AI agent updates (20 ticks = 1 second)")
                 .defineInRange("agent_think_interval", 100, 20, 1200);
+
+        AGENT_LLM_PLANNING = BUILDER
+                .comment("Let the LLM choose idle farmers' next actions (opt-in: every plan is a paid LLM call). Plans are requested in the background and applied when they arrive; other professions' actions are not carried out yet, so they are not asked")
+                .define("agent_llm_planning", false);
+
+        AGENT_PLAN_INTERVAL = BUILDER
+                .comment("Minimum ticks between plan requests for one villager")
+                .defineInRange("agent_plan_interval", 1200, 100, 72000);
+
+        AGENT_PLAN_MAX_IN_FLIGHT = BUILDER
+                .comment("Maximum plan requests one villager may have waiting on the LLM")
+                .defineInRange("agent_plan_max_in_flight", 1, 1, 4);
         
         ENABLE_VILLAGER_CHAT = BUILDER
                 .comment("Enable villager-to-villager chat")
@@ -77,6 +357,94 @@ public class ModConfig {
                 .comment("Ticks between villager item pickup attempts (20 ticks = 1 second)")
                 .defineInRange("villager_pickup_interval", 10, 1, 200);
 
+        FARM_SCAN_PARALLEL = BUILDER
+                .comment("Run farmers' crop and farmland searches in parallel on worker threads; the server thread waits for them, then applies the results")
+                .define("farm_scan_parallel", true);
+
+        FARM_SCAN_PARALLEL_MIN_SCANS = BUILDER
+                .comment("Fewest searches in one tick worth handing to the worker threads; smaller batches run on the server thread")
+                .defineInRange("farm_scan_parallel_min_scans", 4, 1, 1024);
+
+        FARM_SCAN_THREADS = BUILDER
+                .comment("Worker threads for farm searches, 0 = one less than the number of CPU cores. Takes effect on restart")
+                .defineInRange("farm_scan_threads", 0, 0, 64);
+
+        FARM_DISPATCHER_ENABLED = BUILDER
+                .comment("Share fields between a village's farmers: split farmland into plots assigned by size, and reserve each farmer's target block so no two farmers walk to the same one")
+                .define("farm_dispatcher_enabled", true);
+
+        FARM_RESERVATION_TIMEOUT_TICKS = BUILDER
+                .comment("Ticks a reserved target stays hidden from other farmers without being renewed")
+                .defineInRange("farm_reservation_timeout_ticks", 400, 20, 6000);
+
+        FARM_ROUTE_MAX_STOPS = BUILDER
+                .comment("Most blocks a farmer plans into one walking route before scanning again. 1 = one block per walk")
+                .defineInRange("farm_route_max_stops", 24, 1, 128);
+
+        FARM_FORECAST_ENABLED = BUILDER
+                .comment("Predict when crops will be mature and send farmers back to their field then, instead of having them glance around for work")
+                .define("farm_forecast_enabled", true);
+
+        FARM_REVISIT_MATURE_FRACTION = BUILDER
+                .comment("Share of a field's known crops predicted mature before its farmer comes back to harvest")
+                .defineInRange("farm_revisit_mature_fraction", 0.5, 0.05, 1.0);
+
+        FARM_BRAIN_WALKING = BUILDER
+                .comment("Walk farmers through a task in the villager brain, which repaths only when the target changes or the path fails. Off = re-issue the path every few ticks")
+                .define("farm_brain_walking", true);
+
+        FARM_DIRECT_HARVEST = BUILDER
+                .comment("Put harvested crops straight into the farmer's inventory instead of dropping them as items to be picked up. Only what does not fit is dropped")
+                .define("farm_direct_harvest", true);
+
+        BATCHED_BLOCK_UPDATES = BUILDER
+                .comment("Collect villagers' block changes during a tick and apply them together, merging changes to the same block (a harvest and its replant become one update)")
+                .define("batched_block_updates", true);
+
+        ASYNC_PATHFINDING = BUILDER
+                .comment("Search villager paths on worker threads against a copy of the blocks; results are applied on the next tick. Off = search on the server thread")
+                .define("async_pathfinding", true);
+
+        PATHFINDING_THREADS = BUILDER
+                .comment("Worker threads for async path searches. Takes effect on restart")
+                .defineInRange("pathfinding_threads", 2, 1, 16);
+
+        NAV_GRAPH_ENABLED = BUILDER
+                .comment("Keep a waypoint graph of each village (beds, workstations, bell, farms and walkable ground) and send villagers on long trips along it, pathfinding only the short legs between waypoints")
+                .define("nav_graph_enabled", true);
+
+        NAV_GRAPH_LONG_TRIP_DISTANCE = BUILDER
+                .comment("Trips longer than this many blocks go by the village graph")
+                .defineInRange("nav_graph_long_trip_distance", 32, 16, 256);
+
+        BUILDER.pop();
+
+        BUILDER.push("Metrics");
+
+        METRICS_EXPORT_ENABLED = BUILDER
+                .comment("Periodically write all metrics in Prometheus text format to villageragent-metrics.prom in the world folder")
+                .define("metrics_export_enabled", false);
+
+        METRICS_EXPORT_INTERVAL_SECONDS = BUILDER
+                .comment("Seconds between metrics file writes")
+                .defineInRange("metrics_export_interval_seconds", 15, 1, 3600);
+
+        AGENT_PROFILER_ENABLED = BUILDER
+                .comment("Track each villager's tick cost over the last 10 seconds (see /va top)")
+                .define("agent_profiler_enabled", true);
+
+        AGENT_THROTTLE_ENABLED = BUILDER
+                .comment("Slow down villagers whose average tick cost exceeds agent_throttle_budget_micros. Needs the profiler")
+                .define("agent_throttle_enabled", false);
+
+        AGENT_THROTTLE_BUDGET_MICROS = BUILDER
+                .comment("Average microseconds per tick one villager may cost before it is throttled")
+                .defineInRange("agent_throttle_budget_micros", 500, 10, 100000);
+
+        AGENT_THROTTLE_STRIDE = BUILDER
+                .comment("A throttled villager runs one in this many of its updates")
+                .defineInRange("agent_throttle_stride", 4, 2, 20);
+
         BUILDER.pop();
 
         SPEC = BUILDER.build();
@@ -2,6 +2,7 @@ package com.github.AaronAA0721.villageragent.events;
 
 import com.github.AaronAA0721.villageragent.ai.*;
 import com.github.AaronAA0721.villageragent.config.ModConfig;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
 import com.github.AaronAA0721.villageragent.network.ModNetworking;
 import com.github.AaronAA0721.villageragent.network.SyncVillagerDataPacket;
 import net.minecraft.entity.item.ItemEntity;
@@ -17,6 +18,7 @@ import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.Event;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -32,6 +34,10 @@ import java.util.List;
  */
 public class VillagerEventHandler {
     private static final Logger LOGGER = LogManager.getLogger();
+    private static final String PHASE_MAILBOXES = MetricsRegistry.name("tick_phase_seconds", "phase", "mailboxes");
+    private static final String PHASE_AGENTS = MetricsRegistry.name("tick_phase_seconds", "phase", "agents");
+    private static final String PHASE_FARMING = MetricsRegistry.name("tick_phase_seconds", "phase", "farming");
+    private static final String PHASE_PICKUP = MetricsRegistry.name("tick_phase_seconds", "phase", "item_pickup");
     private int pickupTickCounter = 0;
     
     /**
@@ -113,6 +119,18 @@ public class VillagerEventHandler {
         }
     }
     
+    /**
+     * Apply LLM results (chat lines, trades, identities, plans) that arrived
+     * since the last tick, before any world ticks.
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START) return;
+        long start = System.nanoTime();
+        VillagerAgentManager.drainMailboxes();
+        MetricsRegistry.recordSince(PHASE_MAILBOXES, start);
+    }
+
     /**
      * Update all AI agents every tick and handle item pickup
      */
@@ -121,18 +139,28 @@ public class VillagerEventHandler {
         if (!ModConfig.ENABLE_AI_AGENTS.get()) return;
 
         if (event.phase == TickEvent.Phase.END && !event.world.isClientSide) {
+            AgentTickProfiler.beginTick(event.world.getGameTime());
+
             // Slow tick — goals, restocking, AI decisions (gated by AGENT_THINK_INTERVAL)
+            long start = System.nanoTime();
             VillagerAgentManager.tickAgents(event.world);
+            MetricsRegistry.recordSince(PHASE_AGENTS, start);
 
             // Fast tick — farming state machine runs every tick for responsive walking/acting
+            start = System.nanoTime();
             VillagerAgentManager.tickFarming(event.world);
+            // Block changes from anywhere else in the agent tick (e.g. LLM-dispatched actions)
+            BlockChangeBuffer.flush((ServerWorld) event.world);
+            MetricsRegistry.recordSince(PHASE_FARMING, start);
 
             // Handle item pickup for all villagers using configurable interval
             pickupTickCounter++;
             int pickupInterval = ModConfig.VILLAGER_PICKUP_INTERVAL.get();
             if (pickupTickCounter >= pickupInterval) {
                 pickupTickCounter = 0;
+                start = System.nanoTime();
                 handleVillagerItemPickup(event.world);
+                MetricsRegistry.recordSince(PHASE_PICKUP, start);
             }
         }
     }
@@ -162,10 +190,13 @@ public class VillagerEventHandler {
 
                 VillagerEntity villager = (VillagerEntity) entity;
                 if (!villager.isAlive()) continue;
+                if (AgentTickProfiler.shouldSkip(agent)) continue;
 
                 // Use the new item attraction system
                 // Items are attracted to villager and automatically picked up
+                long start = System.nanoTime();
                 ItemAttractionSystem.processItemAttraction(villager, world, agent);
+                AgentTickProfiler.record(agent, AgentTickProfiler.Cost.PICKUP, start);
             }
         } catch (Exception e) {
             LOGGER.error("Error in villager item pickup: " + e.getMessage(), e);
@@ -230,6 +261,19 @@ public class VillagerEventHandler {
         }
     }
 
+    /**
+     * Every block change that notifies neighbours: async path searches over
+     * that spot are now out of date, and village graph links across it need
+     * a re-check.
+     */
+    @SubscribeEvent
+    public void onBlockChanged(BlockEvent.NeighborNotifyEvent event) {
+        if (event.getWorld() instanceof ServerWorld) {
+            PathService.onBlockChanged((ServerWorld) event.getWorld(), event.getPos());
+            VillageNavGraph.onBlockChanged((ServerWorld) event.getWorld(), event.getPos());
+        }
+    }
+
     /**
      * Load agent data when world loads
      */
@@ -0,0 +1,158 @@
+package com.github.AaronAA0721.villageragent.metrics;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide counters, gauges and latency histograms for the agent subsystem.
+ * Metrics are keyed by a Prometheus-style name, optionally with labels,
+ * e.g. {@code llm_prompt_tokens_total{purpose="chat"}}.
+ * Safe to update from any thread; updates never take a lock.
+ */
+public class MetricsRegistry {
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private static final double[] EXPORTED_QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Build a metric key from a base name and label key/value pairs.
+     * {@code name("llm_requests_total", "provider", "openai")} → {@code llm_requests_total{provider="openai"}}
+     */
+    public static String name(String base, String... labels) {
+        if (labels.length == 0) return base;
+        StringBuilder sb = new StringBuilder(base).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static void increment(String name) {
+        counter(name).increment();
+    }
+
+    public static void add(String name, long amount) {
+        counter(name).add(amount);
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Record the time since {@code startNanos} (from {@link System#nanoTime()}).
+     * Histogram names end in {@code _seconds}; values are kept in microseconds.
+     */
+    public static void recordSince(String name, long startNanos) {
+        histogram(name).recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Register a value that is read when metrics are shown or exported, such
+     * as a queue depth. Re-registering a name replaces the supplier.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * Sorted point-in-time copy of all counters (for commands and export).
+     */
+    public static Map<String, Long> snapshotCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    public static Map<String, Long> snapshotGauges() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : GAUGES.entrySet()) {
+            try {
+                snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+            } catch (RuntimeException e) {
+                // a gauge whose source is gone reads as absent
+            }
+        }
+        return snapshot;
+    }
+
+    public static Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    /** Sum of every counter with this base name, across all label values. */
+    public static long sum(String base) {
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+            if (baseName(entry.getKey()).equals(base)) total += entry.getValue().sum();
+        }
+        return total;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format. Histograms are
+     * exported as summaries with fixed quantiles, in seconds.
+     */
+    public static String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        Set<String> typed = new HashSet<>();
+
+        for (Map.Entry<String, Long> entry : snapshotCounters().entrySet()) {
+            writeType(out, typed, entry.getKey(), "counter");
+            out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : snapshotGauges().entrySet()) {
+            writeType(out, typed, entry.getKey(), "gauge");
+            out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            String key = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            writeType(out, typed, key, "summary");
+            for (double quantile : EXPORTED_QUANTILES) {
+                out.append(withLabel(key, "quantile", String.valueOf(quantile))).append(' ')
+                        .append(histogram.getPercentileMicros(quantile * 100) / 1e6).append('\n');
+            }
+            out.append(withSuffix(key, "_sum")).append(' ').append(histogram.getSumMicros() / 1e6).append('\n');
+            out.append(withSuffix(key, "_count")).append(' ').append(histogram.getCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void writeType(StringBuilder out, Set<String> typed, String key, String type) {
+        String base = baseName(key);
+        if (typed.add(base)) {
+            out.append("# TYPE ").append(base).append(' ').append(type).append('\n');
+        }
+    }
+
+    static String baseName(String key) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? key : key.substring(0, brace);
+    }
+
+    private static String withLabel(String key, String label, String value) {
+        int brace = key.indexOf('{');
+        if (brace < 0) return key + "{" + label + "=\"" + value + "\"}";
+        return key.substring(0, key.length() - 1) + "," + label + "=\"" + value + "\"}";
+    }
+
+    private static String withSuffix(String key, String suffix) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? key + suffix : key.substring(0, brace) + suffix + key.substring(brace);
+    }
+}
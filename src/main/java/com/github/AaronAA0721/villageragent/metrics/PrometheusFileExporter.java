@@ -0,0 +1,63 @@
+package com.github.AaronAA0721.villageragent.metrics;
+
+import com.github.AaronAA0721.villageragent.config.ModConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.storage.FolderName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes {@link MetricsRegistry#toPrometheusText()} to
+ * {@code villageragent-metrics.prom} in the world folder, for a node
+ * exporter textfile collector or any scraper that reads files. The file is
+ * replaced atomically, and the work runs on its own daemon thread, never on
+ * the server thread.
+ */
+public class PrometheusFileExporter {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String FILE_NAME = "villageragent-metrics.prom";
+
+    private static ScheduledExecutorService scheduler;
+
+    /** Start exporting for this server if enabled in the config. */
+    public static synchronized void start(MinecraftServer server) {
+        stop();
+        if (!ModConfig.METRICS_EXPORT_ENABLED.get()) return;
+
+        Path target = server.getWorldPath(FolderName.ROOT).resolve(FILE_NAME).normalize();
+        int intervalSeconds = ModConfig.METRICS_EXPORT_INTERVAL_SECONDS.get();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "VillagerAgent-Metrics-Export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> write(target), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        LOGGER.info("Exporting VillagerAgent metrics to " + target + " every " + intervalSeconds + "s");
+    }
+
+    /** Stop exporting; the last written file is left in place. */
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    private static void write(Path target) {
+        Path temp = target.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.write(temp, MetricsRegistry.toPrometheusText().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write metrics to " + target + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.github.AaronAA0721.villageragent.network;
 
 import com.github.AaronAA0721.villageragent.Villageragent;
+import com.github.AaronAA0721.villageragent.metrics.MetricsRegistry;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.network.NetworkRegistry;
 import net.minecraftforge.fml.network.simple.SimpleChannel;
 
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
 /**
  * Network handler for client-server communication
  */
@@ -24,54 +29,75 @@ public class ModNetworking {
         return packetId++;
     }
     
+    /** Count the bytes each packet type writes into {@code packet_bytes_total}. */
+    private static <MSG> BiConsumer<MSG, PacketBuffer> meteredEncoder(String packet, BiConsumer<MSG, PacketBuffer> encoder) {
+        String key = MetricsRegistry.name("packet_bytes_total", "packet", packet, "direction", "encode");
+        return (message, buffer) -> {
+            int start = buffer.writerIndex();
+            encoder.accept(message, buffer);
+            MetricsRegistry.add(key, buffer.writerIndex() - start);
+        };
+    }
+
+    /** Count the bytes each packet type reads into {@code packet_bytes_total}. */
+    private static <MSG> Function<PacketBuffer, MSG> meteredDecoder(String packet, Function<PacketBuffer, MSG> decoder) {
+        String key = MetricsRegistry.name("packet_bytes_total", "packet", packet, "direction", "decode");
+        return buffer -> {
+            int start = buffer.readerIndex();
+            MSG message = decoder.apply(buffer);
+            MetricsRegistry.add(key, buffer.readerIndex() - start);
+            return message;
+        };
+    }
+
     public static void register() {
         // Client -> Server: Player sends chat message
         CHANNEL.registerMessage(nextId(),
                 ChatMessagePacket.class,
-                ChatMessagePacket::encode,
-                ChatMessagePacket::decode,
+                meteredEncoder("chat_message", ChatMessagePacket::encode),
+                meteredDecoder("chat_message", ChatMessagePacket::decode),
                 ChatMessagePacket::handle);
         
         // Server -> Client: Villager response
         CHANNEL.registerMessage(nextId(),
                 VillagerResponsePacket.class,
-                VillagerResponsePacket::encode,
-                VillagerResponsePacket::decode,
+                meteredEncoder("villager_response", VillagerResponsePacket::encode),
+                meteredDecoder("villager_response", VillagerResponsePacket::decode),
                 VillagerResponsePacket::handle);
         
         // Client -> Server: Trade request
         CHANNEL.registerMessage(nextId(),
                 TradeRequestPacket.class,
-                TradeRequestPacket::encode,
-                TradeRequestPacket::decode,
+                meteredEncoder("trade_request", TradeRequestPacket::encode),
+                meteredDecoder("trade_request", TradeRequestPacket::decode),
                 TradeRequestPacket::handle);
         
         // Server -> Client: Trade result
         CHANNEL.registerMessage(nextId(),
                 TradeResultPacket.class,
-                TradeResultPacket::encode,
-                TradeResultPacket::decode,
+                meteredEncoder("trade_result", TradeResultPacket::encode),
+                meteredDecoder("trade_result", TradeResultPacket::decode),
                 TradeResultPacket::handle);
         
         // Client -> Server: Open chat GUI request
         CHANNEL.registerMessage(nextId(),
                 OpenChatPacket.class,
-                OpenChatPacket::encode,
-                OpenChatPacket::decode,
+                meteredEncoder("open_chat", OpenChatPacket::encode),
+                meteredDecoder("open_chat", OpenChatPacket::decode),
                 OpenChatPacket::handle);
         
         // Server -> Client: Sync villager data for GUI
         CHANNEL.registerMessage(nextId(),
                 SyncVillagerDataPacket.class,
-                SyncVillagerDataPacket::encode,
-                SyncVillagerDataPacket::decode,
+                meteredEncoder("sync_villager_data", SyncVillagerDataPacket::encode),
+                meteredDecoder("sync_villager_data", SyncVillagerDataPacket::decode),
                 SyncVillagerDataPacket::handle);
 
         // Server -> Client: Crafting request
         CHANNEL.registerMessage(nextId(),
                 CraftingRequestPacket.class,
-                CraftingRequestPacket::encode,
-                CraftingRequestPacket::decode,
+                meteredEncoder("crafting_request", CraftingRequestPacket::encode),
+                meteredDecoder("crafting_request", CraftingRequestPacket::decode),
                 CraftingRequestPacket::handle);
     }
 }
@@ -1,6 +1,9 @@
 package com.github.AaronAA0721.villageragent.network;
 
+import com.github.AaronAA0721.villageragent.ai.LLMPrompt;
 import com.github.AaronAA0721.villageragent.ai.LLMService;
+import com.github.AaronAA0721.villageragent.ai.TradeEvaluator;
+import com.github.AaronAA0721.villageragent.ai.TradeReply;
 import com.github.AaronAA0721.villageragent.ai.VillagerAgentData;
 import com.github.AaronAA0721.villageragent.ai.VillagerAgentManager;
 import net.minecraft.entity.player.ServerPlayerEntity;
@@ -11,6 +14,7 @@ import net.minecraftforge.fml.network.PacketDistributor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.function.Supplier;
 
@@ -66,7 +70,17 @@ public class TradeRequestPacket {
             // Build trade description for LLM
             String tradeDescription = buildTradeDescription(packet, agent);
             LOGGER.info("Trade request: " + tradeDescription);
-            
+
+            // Obvious cases (missing items, nothing offered, clearly fair or unfair) are decided locally
+            TradeEvaluator.Decision decision = TradeEvaluator.evaluate(agent,
+                    Arrays.asList(packet.offerItem1, packet.offerItem2),
+                    Arrays.asList(packet.requestItem1, packet.requestItem2));
+            if (decision.getVerdict() != TradeEvaluator.Verdict.ASK_LLM) {
+                completeTrade(player, agent, packet, decision.getVerdict() == TradeEvaluator.Verdict.ACCEPT,
+                        decision.getReason());
+                return;
+            }
+
             // Ask LLM to evaluate the trade
             evaluateTradeWithLLM(player, agent, packet, tradeDescription);
         });
@@ -149,11 +163,12 @@ public class TradeRequestPacket {
         String profession = agent.getProfession();
         String inventoryDesc = buildInventoryDescription(agent);
 
-        // Flexible, personality-driven prompt
+        // Flexible, personality-driven prompt. Persona and rules come first and
+        // never change for this villager, so providers can cache them; the
+        // inventory follows as volatile context.
         String systemPrompt = "You are " + agent.getName() + ", a " + profession + " villager in Minecraft. " +
                 "Your personality: " + agent.getPersonality() + ".\n\n" +
-                "A player wants to trade with you.\n\n" +
-                "YOUR CURRENT INVENTORY (items you own and can trade away):\n" + inventoryDesc + "\n\n" +
+                "Players sometimes propose trades with you.\n\n" +
                 "TRADE VALUE GUIDE:\n" +
                 "- Emeralds, gold ingots, and diamonds are valuable currencies.\n" +
                 "- Rare items (diamonds, enchanted gear, netherite) are very precious.\n" +
@@ -164,47 +179,50 @@ public class TradeRequestPacket {
                 "- Is this trade fair in terms of value?\n" +
                 "- Do you want or need what they're giving you?\n" +
                 "- Does this feel like a good deal for YOU?\n\n" +
-                "Respond with EXACTLY: ACCEPT or REJECT followed by a short in-character reason (1 sentence).";
+                "Decide ACCEPT or REJECT and give a short in-character reason (1 sentence). " +
+                "Respond ONLY with JSON in this exact format: {\"decision\":\"ACCEPT\",\"reason\":\"your reason\"}";
 
-        String userPrompt = "TRADE PROPOSAL:\n" + tradeDescription +
-                "\n\nDo you accept this trade? Respond in character, starting with ACCEPT or REJECT.";
+        String context = "YOUR CURRENT INVENTORY (items you own and can trade away):\n" + inventoryDesc;
 
-        LLMService.queryLLM(systemPrompt, userPrompt).thenAccept(response -> {
-            boolean accepted = response.toUpperCase().startsWith("ACCEPT");
-            String reason = response.length() > 7 ? response.substring(7).trim() : response;
+        String userPrompt = "TRADE PROPOSAL:\n" + tradeDescription +
+                "\n\nDo you accept this trade? Answer with the JSON decision and an in-character reason.";
 
-            // Clean up the reason - remove leading punctuation
-            if (reason.startsWith(":") || reason.startsWith("-") || reason.startsWith(".")) {
-                reason = reason.substring(1).trim();
-            }
-            if (reason.startsWith("!")) {
-                reason = reason.substring(1).trim();
-            }
+        LLMPrompt prompt = new LLMPrompt(systemPrompt, context, userPrompt, LLMPrompt.RequestClass.TRADE).withJsonOutput();
+        LLMService.queryLLM(prompt).thenAccept(response -> {
+            TradeReply reply = TradeReply.parse(response);
+            // Inventories are only touched on the server thread
+            agent.post(a -> completeTrade(player, a, packet, reply.isAccepted(), reply.getReason()));
+        });
+    }
 
-            LOGGER.info("Trade " + (accepted ? "ACCEPTED" : "REJECTED") + ": " + reason);
+    /**
+     * Carry out a decided trade and tell the player the outcome.
+     */
+    private static void completeTrade(ServerPlayerEntity player, VillagerAgentData agent, TradeRequestPacket packet,
+                                      boolean accepted, String reason) {
+        LOGGER.info("Trade " + (accepted ? "ACCEPTED" : "REJECTED") + ": " + reason);
 
-            // Execute trade if accepted, otherwise return items to player
-            if (accepted) {
-                boolean success = executeTrade(player, agent, packet);
-                if (!success) {
-                    // Trade failed (items not available) - return items to player
-                    reason = "Wait, I don't actually have those items. Sorry!";
-                    accepted = false;
-                    returnItemsToPlayer(player, packet);
-                }
-            } else {
-                // Trade rejected - return the offered items to player
+        // Execute trade if accepted, otherwise return items to player
+        if (accepted) {
+            boolean success = executeTrade(player, agent, packet);
+            if (!success) {
+                // Trade failed (items not available) - return items to player
+                reason = "Wait, I don't actually have those items. Sorry!";
+                accepted = false;
                 returnItemsToPlayer(player, packet);
             }
+        } else {
+            // Trade rejected - return the offered items to player
+            returnItemsToPlayer(player, packet);
+        }
 
-            // Send result to client
-            TradeResultPacket resultPacket = new TradeResultPacket(
-                    packet.villagerId,
-                    accepted,
-                    reason
-            );
-            ModNetworking.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), resultPacket);
-        });
+        // Send result to client
+        TradeResultPacket resultPacket = new TradeResultPacket(
+                packet.villagerId,
+                accepted,
+                reason
+        );
+        ModNetworking.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), resultPacket);
     }
 
     /**